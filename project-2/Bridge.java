@@ -0,0 +1,353 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A learning bridge, which joins several media (segments) into one network
+ * while keeping each segment's traffic to itself.  The bridge has a port on
+ * each segment, and receives every frame sent on it.  From each intact frame
+ * it learns that the frame's source lives on the segment where it was heard.
+ * It then forwards the frame only to the segment where its destination lives.
+ * It drops the frame if the destination is on the segment it came from. It
+ * floods the frame to every other segment if the destination is the
+ * broadcast address or has not been heard from recently.
+ *
+ * The forwarding table is a hash table from address to port.  Each entry
+ * ages: an address not heard from within the aging time (taken from the
+ * system property <code>bridge.agingTime</code>, in milliseconds of
+ * simulated time) is forgotten, so a station that moves is soon found again.
+ *
+ * All segments must keep the same time, so the bridge has every segment use
+ * the scheduler of the first.
+ *
+ * Frames are those of <code>CRCDataLinkLayer</code>, whose header carries the
+ * destination and source addresses.  Each port checks them with its own
+ * checksum, so every segment must use the same one as the bridge.
+ *
+ * @file   Bridge.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class Bridge {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a bridge with a port on each of the given segments.  Must be done
+     * before any sending.
+     *
+     * @param  segments The media to join.
+     * @throws RuntimeException if no segments are given.
+     */
+    public Bridge (Medium... segments) {
+
+	if (segments.length == 0) {
+	    throw new RuntimeException("A bridge needs at least one segment");
+	}
+
+	ports     = new ArrayList<Port>();
+	table     = new HashMap<Byte, Entry>();
+	scheduler = segments[0].getScheduler();
+	setAgingTime(Scheduler.millis(Long.getLong("bridge.agingTime",
+						   DEFAULT_AGING_TIME)));
+	for (Medium segment : segments) {
+	    attach(segment);
+	}
+
+    } // Bridge ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a port on another segment, which is made to keep the bridge's time.
+     *
+     * @param segment The medium to join to the others.
+     */
+    public void attach (Medium segment) {
+
+	segment.setScheduler(scheduler);
+	Port port = new Port(this, ports.size());
+	port.connect(PhysicalLayer.create(segment));
+	ports.add(port);
+
+    } // attach ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set how long an address may go unheard before it is forgotten.
+     *
+     * @param  agingTime The time, in nanoseconds.
+     * @throws RuntimeException if the time is not positive.
+     */
+    public void setAgingTime (long agingTime) {
+
+	if (agingTime <= 0) {
+	    throw new RuntimeException("Invalid aging time " + agingTime);
+	}
+	this.agingTime = agingTime;
+
+    } // setAgingTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of frames forwarded to a single port. */
+    public long getForwarded () {
+
+	return forwarded;
+
+    } // getForwarded ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of frames flooded to every other port. */
+    public long getFlooded () {
+
+	return flooded;
+
+    } // getFlooded ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of frames dropped, whether damaged or destined for
+     *         the segment they came from.
+     */
+    public long getDropped () {
+
+	return dropped;
+
+    } // getDropped ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Learn from a frame heard on a port, and send it on its way.
+     *
+     * @param from     The port on which the frame was heard.
+     * @param contents The frame, as extracted from between its tags, still in
+     *                 the port's deframing ring.
+     */
+    private void forward (Port from, ByteRing contents) {
+
+	// A damaged frame cannot be trusted to say where it came from or where
+	// it is going.
+	if (!from.isFrameIntact()) {
+	    dropped += 1;
+	    return;
+	}
+	byte destination = contents.peek(DESTINATION);
+	byte source      = contents.peek(SOURCE);
+	long now         = scheduler.now();
+
+	// Learn, or refresh, where the source lives.
+	Entry entry = table.get(source);
+	if (entry == null) {
+	    table.put(source, new Entry(from, now));
+	} else {
+	    entry.port     = from;
+	    entry.lastSeen = now;
+	}
+
+	// Find where the destination lives, forgetting it if it has not been
+	// heard from lately.
+	Port to = null;
+	if (destination != DataLinkLayer.BROADCAST) {
+	    entry = table.get(destination);
+	    if (entry != null && now - entry.lastSeen > agingTime) {
+		table.remove(destination);
+		entry = null;
+	    }
+	    if (entry != null) {
+		to = entry.port;
+	    }
+	}
+
+	// Frame the contents straight from the ring into a pooled buffer, which
+	// is free again once every port has taken its copy.
+	if (to == from) {
+	    dropped += 1;
+	} else if (to != null) {
+	    forwarded += 1;
+	    ByteBuffer frame = from.reframe(contents);
+	    to.transmit(frame);
+	    from.framePool.release(frame);
+	} else {
+	    flooded += 1;
+	    ByteBuffer frame = from.reframe(contents);
+	    for (Port port : ports) {
+		if (port != from) {
+		    port.transmit(frame);
+		}
+	    }
+	    from.framePool.release(frame);
+	}
+
+	if (debug) {
+	    System.out.printf("Bridge.forward(): %d -> %d from port %d to %s\n",
+			      source & 0xff,
+			      destination & 0xff,
+			      from.number,
+			      (to == null ? "all" : "" + to.number));
+	}
+
+    } // forward ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A bridge's connection to one segment: a data link layer that hands
+     * every frame it hears to the bridge, rather than to a host.
+     */
+    private static class Port extends CRCDataLinkLayer {
+
+	// =====================================================================
+	private Port (Bridge bridge, int number) {
+
+	    this.bridge = bridge;
+	    this.number = number;
+
+	} // Port ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * Hand every frame heard, whatever its destination, to the bridge.
+	 *
+	 * @param data The de-tagged contents extracted from the frame.
+	 */
+	protected void finishFrameReceive (ByteRing data) {
+
+	    bridge.forward(this, data);
+
+	} // finishFrameReceive ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The bridge to which this port belongs. */
+	private final Bridge bridge;
+
+	/** The position of this port on the bridge. */
+	private final int    number;
+	// =====================================================================
+
+    } // class Port
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** An entry in the forwarding table. */
+    private static class Entry {
+
+	// =====================================================================
+	private Entry (Port port, long lastSeen) {
+
+	    this.port     = port;
+	    this.lastSeen = lastSeen;
+
+	} // Entry ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The port on whose segment the address was last heard. */
+	private Port port;
+
+	/** When the address was last heard, in nanoseconds. */
+	private long lastSeen;
+	// =====================================================================
+
+    } // class Entry
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The ports, one per segment, in order of attachment. */
+    private List<Port>        ports;
+
+    /** Where each address lives, as far as the bridge knows. */
+    private Map<Byte, Entry>  table;
+
+    /** The scheduler that all segments share. */
+    private Scheduler         scheduler;
+
+    /** How long an address may go unheard, in nanoseconds. */
+    private long              agingTime;
+
+    /** Counts of what became of the frames heard. */
+    private long              forwarded;
+    private long              flooded;
+    private long              dropped;
+
+    /** The default aging time, in milliseconds: 300 s, as for Ethernet. */
+    public static final long  DEFAULT_AGING_TIME = 300000L;
+
+    /** Where the addresses sit in a frame's header. */
+    private static final int  DESTINATION        = 2;
+    private static final int  SOURCE             = 3;
+
+    /** Whether to emit debugging information. */
+    private static final boolean debug           = false;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Bridge
+// =============================================================================
@@ -0,0 +1,345 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.SplittableRandom;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A source of bursty bit errors, following the Gilbert-Elliott model: the
+ * channel is always in either a good state or a bad state, each with its own
+ * bit error probability, and after each bit it moves to the other state with
+ * a fixed probability.
+ *
+ * The time spent in each visit to a state is geometrically distributed, so
+ * the engine draws the whole length of a visit at once when the visit begins,
+ * and, within a visit, draws the distance to the next error just as
+ * <code>NoiseEngine</code> does.  The random number generator is thus
+ * consulted once per state change and once per error, never once per bit.
+ *
+ * @file   BurstNoiseEngine.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ * @see    NoiseEngine
+ */
+public class BurstNoiseEngine {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an engine whose errors are reproducible from the given seed.
+     *
+     * @param goodToBad            The probability of moving, after any one
+     *                             bit, from the good state to the bad state.
+     * @param badToGood            The probability of moving, after any one
+     *                             bit, from the bad state to the good state.
+     * @param goodErrorProbability The probability that a bit sent in the good
+     *                             state is flipped.
+     * @param badErrorProbability  The probability that a bit sent in the bad
+     *                             state is flipped.
+     * @param seed                 The seed for the engine's random numbers.
+     * @throws RuntimeException if any probability is not in
+     *                          <code>[0, 1]</code>.
+     */
+    public BurstNoiseEngine (double goodToBad,
+			     double badToGood,
+			     double goodErrorProbability,
+			     double badErrorProbability,
+			     long   seed) {
+
+	this(goodToBad,
+	     badToGood,
+	     goodErrorProbability,
+	     badErrorProbability,
+	     new SplittableRandom(seed));
+
+    } // BurstNoiseEngine ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an engine whose errors are not reproducible.
+     *
+     * @see BurstNoiseEngine(double, double, double, double, long)
+     */
+    public BurstNoiseEngine (double goodToBad,
+			     double badToGood,
+			     double goodErrorProbability,
+			     double badErrorProbability) {
+
+	this(goodToBad,
+	     badToGood,
+	     goodErrorProbability,
+	     badErrorProbability,
+	     new SplittableRandom());
+
+    } // BurstNoiseEngine ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    private BurstNoiseEngine (double           goodToBad,
+			      double           badToGood,
+			      double           goodErrorProbability,
+			      double           badErrorProbability,
+			      SplittableRandom random) {
+
+	checkProbability(goodToBad);
+	checkProbability(badToGood);
+	checkProbability(goodErrorProbability);
+	checkProbability(badErrorProbability);
+
+	this.random               = random;
+	this.goodToBad            = goodToBad;
+	this.badToGood            = badToGood;
+	this.goodErrorProbability = goodErrorProbability;
+	this.badErrorProbability  = badErrorProbability;
+
+	// Begin in each state in proportion to the time spent there in the
+	// long run.
+	double leaving = goodToBad + badToGood;
+	boolean startBad = (leaving > 0.0 &&
+			    random.nextDouble() < goodToBad / leaving);
+	enterState(startBad);
+
+    } // BurstNoiseEngine ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the long-run fraction of bits that are flipped.
+     */
+    public double getAverageErrorProbability () {
+
+	double leaving = goodToBad + badToGood;
+	if (leaving <= 0.0) {
+	    return (bad ? badErrorProbability : goodErrorProbability);
+	}
+	return ((badToGood * goodErrorProbability +
+		 goodToBad * badErrorProbability) / leaving);
+
+    } // getAverageErrorProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Advance past one bit, reporting whether it is to be flipped.
+     *
+     * @return <code>true</code> if the bit is flipped.
+     */
+    public boolean nextBitFlips () {
+
+	boolean flips = (bitsUntilError == 0);
+	if (flips) {
+	    bitsUntilError = NoiseEngine.geometric(random, errorProbability());
+	} else {
+	    bitsUntilError -= 1;
+	}
+
+	bitsLeftInState -= 1;
+	if (bitsLeftInState == 0) {
+	    enterState(!bad);
+	}
+
+	return flips;
+
+    } // nextBitFlips ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return a number of bits that are certain to pass unharmed and without
+     *         a change of state.
+     */
+    public long bitsUntilError () {
+
+	return Math.min(bitsUntilError, bitsLeftInState - 1);
+
+    } // bitsUntilError ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Advance past a run of bytes that is known to contain no error and no
+     * change of state, that is, one no longer than
+     * <code>bitsUntilError()</code> bits.
+     *
+     * @param length The number of bytes.
+     */
+    public void skip (int length) {
+
+	long bits        = (long)length * BITS_PER_BYTE;
+	bitsUntilError  -= bits;
+	bitsLeftInState -= bits;
+
+    } // skip ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Advance past a run of bytes, flipping in place each bit that is to be
+     * flipped.  Bits are counted most significant first, as they are sent.
+     *
+     * @param  data   The buffer holding the bytes to corrupt.
+     * @param  offset The index of the first byte.
+     * @param  length The number of bytes.
+     * @return the number of bits flipped.
+     */
+    public int corrupt (byte[] data, int offset, int length) {
+
+	long position  = 0;
+	long remaining = (long)length * BITS_PER_BYTE;
+	int  flipped   = 0;
+	while (remaining > 0) {
+
+	    // Handle as much of the run as lies within the current visit.
+	    long span = Math.min(remaining, bitsLeftInState);
+	    long done = 0;
+	    while (bitsUntilError < span - done) {
+
+		long errorPosition = position + done + bitsUntilError;
+		if (debug) {
+		    System.out.printf("BurstNoiseEngine.corrupt(): " +
+				      "Flipped bit %d (%s state)\n",
+				      errorPosition,
+				      (bad ? "bad" : "good"));
+		}
+		data[offset + (int)(errorPosition >>> 3)] ^=
+		    (byte)(0x80 >>> (int)(errorPosition & 7));
+		flipped        += 1;
+		done           += bitsUntilError + 1;
+		bitsUntilError  = NoiseEngine.geometric(random,
+							errorProbability());
+
+	    }
+	    bitsUntilError  -= span - done;
+	    bitsLeftInState -= span;
+	    position        += span;
+	    remaining       -= span;
+
+	    // If the visit is over, move to the other state.
+	    if (bitsLeftInState == 0) {
+		enterState(!bad);
+	    }
+
+	}
+
+	return flipped;
+
+    } // corrupt ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Begin a visit to a state, drawing how long the visit lasts and how far
+     * into it the first error falls.
+     *
+     * @param bad Whether the state being entered is the bad state.
+     */
+    private void enterState (boolean bad) {
+
+	this.bad = bad;
+
+	// A visit lasts one bit plus however many bits pass before leaving.
+	long stay = NoiseEngine.geometric(random, (bad ? badToGood : goodToBad));
+	bitsLeftInState = (stay == Long.MAX_VALUE ? stay : stay + 1);
+	bitsUntilError  = NoiseEngine.geometric(random, errorProbability());
+
+    } // enterState ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the bit error probability of the current state. */
+    private double errorProbability () {
+
+	return (bad ? badErrorProbability : goodErrorProbability);
+
+    } // errorProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    private static void checkProbability (double probability) {
+
+	if (!(probability >= 0.0 && probability <= 1.0)) {
+	    throw new RuntimeException("Invalid probability " + probability);
+	}
+
+    } // checkProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The source of random numbers, owned by this engine alone. */
+    private final SplittableRandom random;
+
+    /** The per-bit probability of leaving the good state. */
+    private final double goodToBad;
+
+    /** The per-bit probability of leaving the bad state. */
+    private final double badToGood;
+
+    /** The probability that a bit sent in the good state is flipped. */
+    private final double goodErrorProbability;
+
+    /** The probability that a bit sent in the bad state is flipped. */
+    private final double badErrorProbability;
+
+    /** Whether the channel is currently in the bad state. */
+    private boolean bad;
+
+    /** The number of bits left in the current visit to a state. */
+    private long bitsLeftInState;
+
+    /** The number of bits that will pass unharmed before the next error. */
+    private long bitsUntilError;
+
+    /** The number of bits in a byte. */
+    private static final int BITS_PER_BYTE = 8;
+
+    /** Whether to emit debugging information. */
+    private static final boolean debug = false;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class BurstNoiseEngine
+// =============================================================================
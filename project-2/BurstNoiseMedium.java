@@ -0,0 +1,242 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A medium whose bit errors come in bursts, following the two-state
+ * Gilbert-Elliott model of <code>BurstNoiseEngine</code>.
+ *
+ * @file   BurstNoiseMedium.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class BurstNoiseMedium extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium configured by the system properties
+     * <code>medium.goodToBad</code>, <code>medium.badToGood</code>,
+     * <code>medium.goodErrorProbability</code>,
+     * <code>medium.badErrorProbability</code> and <code>medium.seed</code>.
+     * Without a seed, errors are not reproducible.
+     */
+    public BurstNoiseMedium () {
+
+	double goodToBad            = doubleProperty("medium.goodToBad",
+						     DEFAULT_GOOD_TO_BAD);
+	double badToGood            = doubleProperty("medium.badToGood",
+						     DEFAULT_BAD_TO_GOOD);
+	double goodErrorProbability =
+	    doubleProperty("medium.goodErrorProbability",
+			   DEFAULT_GOOD_ERROR_PROBABILITY);
+	double badErrorProbability  =
+	    doubleProperty("medium.badErrorProbability",
+			   DEFAULT_BAD_ERROR_PROBABILITY);
+	Long   seed                 = Long.getLong("medium.seed");
+	noise = (seed == null
+		 ? new BurstNoiseEngine(goodToBad,
+					badToGood,
+					goodErrorProbability,
+					badErrorProbability)
+		 : new BurstNoiseEngine(goodToBad,
+					badToGood,
+					goodErrorProbability,
+					badErrorProbability,
+					seed));
+
+    } // BurstNoiseMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium whose errors are reproducible from the given seed.
+     *
+     * @see BurstNoiseEngine(double, double, double, double, long)
+     */
+    public BurstNoiseMedium (double goodToBad,
+			     double badToGood,
+			     double goodErrorProbability,
+			     double badErrorProbability,
+			     long   seed) {
+
+	noise = new BurstNoiseEngine(goodToBad,
+				     badToGood,
+				     goodErrorProbability,
+				     badErrorProbability,
+				     seed);
+
+    } // BurstNoiseMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the long-run fraction of bits that this medium flips.
+     */
+    public double getAverageErrorProbability () {
+
+	return noise.getAverageErrorProbability();
+
+    } // getAverageErrorProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients, flipping it if the
+     * channel so dictates.  Each receiver's copy advances the channel by one
+     * bit.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit The value to be sent, where <code>false</code> sends a
+     *            <code>0</code> bit, and <code>true</code> sends a
+     *            <code>1</code> bit.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, bit);
+	long arrival = arrivalTime(sender, 1);
+
+	// Deliver the bit to each client that is not the sender.
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
+	    if (noise.nextBitFlips()) {
+		if (debug) {
+		    System.out.println("BurstNoiseMedium.transmit(): " +
+				       "Flipped bit!");
+		}
+		captureDamage(sender, receiver, bit);
+		deliver(receiver, arrival, !bit);
+	    } else {
+		deliver(receiver, arrival, bit);
+	    }
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one client to the other clients.  Each receiver
+     * gets its own copy of the run, corrupted by the channel.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	long bits    = (long)length * BITS_PER_BYTE;
+	long arrival = arrivalTime(sender, bits);
+
+	// Deliver a noisy copy of the bytes to each client that is not the
+	// sender.
+	byte[] cleanData = null;
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
+	    // Receivers whose copies are unharmed may share one copy; only
+	    // make a copy of its own for a receiver if the channel may harm it.
+	    if (noise.bitsUntilError() >= bits) {
+		noise.skip(length);
+		if (cleanData == null) {
+		    cleanData = Arrays.copyOfRange(data, offset, offset + length);
+		}
+		deliver(receiver, arrival, cleanData);
+	    } else {
+		byte[] noisyData = Arrays.copyOfRange(data,
+						      offset,
+						      offset + length);
+		noise.corrupt(noisyData, 0, length);
+		captureDamage(sender,
+			      receiver,
+			      data,
+			      offset,
+			      noisyData,
+			      length);
+		deliver(receiver, arrival, noisyData);
+	    }
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    private static double doubleProperty (String name, double defaultValue) {
+
+	String value = System.getProperty(name);
+	return (value == null ? defaultValue : Double.parseDouble(value));
+
+    } // doubleProperty ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The default per-bit probability of a burst beginning. */
+    public static final double DEFAULT_GOOD_TO_BAD            = 0.0001;
+
+    /** The default per-bit probability of a burst ending. */
+    public static final double DEFAULT_BAD_TO_GOOD            = 0.1;
+
+    /** The default probability that a bit outside a burst flips. */
+    public static final double DEFAULT_GOOD_ERROR_PROBABILITY = 0.0;
+
+    /** The default probability that a bit within a burst flips. */
+    public static final double DEFAULT_BAD_ERROR_PROBABILITY  = 0.5;
+
+    // The source of this medium's bit errors.
+    private BurstNoiseEngine noise;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class BurstNoiseMedium
+// =============================================================================
@@ -0,0 +1,332 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A growable first-in, first-out buffer of bytes, kept in a primitive array
+ * used as a ring.  Bytes are neither boxed nor wrapped in list nodes, so a
+ * ring that has grown to the size it needs allocates nothing more, however
+ * many bytes pass through it.  Runs of bytes are moved in and out with
+ * <code>System.arraycopy()</code>, and any byte still held may be peeked at
+ * by its position without being removed.
+ *
+ * Unlike <code>SpscByteRing</code>, a ring is for use by one thread only.
+ *
+ * @file   ByteRing.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class ByteRing {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** Create an empty ring of the default capacity. */
+    public ByteRing () {
+
+	this(DEFAULT_CAPACITY);
+
+    } // ByteRing ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an empty ring.
+     *
+     * @param  capacity The number of bytes the ring can hold before it must
+     *                  grow; it is rounded up to a power of two.
+     * @throws RuntimeException if the capacity is not positive or is too
+     *                          large.
+     */
+    public ByteRing (int capacity) {
+
+	if (capacity <= 0 || capacity > MAX_CAPACITY) {
+	    throw new RuntimeException("Invalid ring capacity " + capacity);
+	}
+	int size = Integer.highestOneBit(capacity);
+	if (size < capacity) {
+	    size <<= 1;
+	}
+	buffer = new byte[size];
+	mask   = size - 1;
+
+    } // ByteRing ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes held. */
+    public int size () {
+
+	return size;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return whether no bytes are held. */
+    public boolean isEmpty () {
+
+	return size == 0;
+
+    } // isEmpty ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** Discard every byte held. */
+    public void clear () {
+
+	head = 0;
+	size = 0;
+
+    } // clear ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a byte at the tail.
+     *
+     * @param value The byte to add.
+     */
+    public void put (byte value) {
+
+	if (size == buffer.length) {
+	    grow(size + 1);
+	}
+	buffer[(head + size) & mask] = value;
+	size += 1;
+
+    } // put ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a run of bytes at the tail.
+     *
+     * @param data   The buffer holding the bytes to add.
+     * @param offset The index of the first byte to add.
+     * @param length The number of bytes to add.
+     */
+    public void put (byte[] data, int offset, int length) {
+
+	if (size + length > buffer.length) {
+	    grow(size + length);
+	}
+	int tail  = (head + size) & mask;
+	int first = Math.min(length, buffer.length - tail);
+	System.arraycopy(data, offset, buffer, tail, first);
+	System.arraycopy(data, offset + first, buffer, 0, length - first);
+	size += length;
+
+    } // put ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove the byte at the head.
+     *
+     * @return the byte removed.
+     * @throws RuntimeException if the ring is empty.
+     */
+    public byte get () {
+
+	if (size == 0) {
+	    throw new RuntimeException("Get from an empty ring");
+	}
+	byte value = buffer[head];
+	head  = (head + 1) & mask;
+	size -= 1;
+
+	return value;
+
+    } // get ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove a run of bytes from the head, as many as are asked for or as are
+     * held, whichever is fewer.
+     *
+     * @param  data   The buffer to receive the bytes.
+     * @param  offset The index at which to place the first byte.
+     * @param  length The most bytes to remove.
+     * @return the number of bytes removed.
+     */
+    public int get (byte[] data, int offset, int length) {
+
+	int count = peek(data, offset, length);
+	skip(count);
+
+	return count;
+
+    } // get ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Look at a byte without removing it.
+     *
+     * @param  index The position of the byte, the head being 0.
+     * @return the byte.
+     * @throws RuntimeException if no byte is held at that position.
+     */
+    public byte peek (int index) {
+
+	if (index < 0 || index >= size) {
+	    throw new RuntimeException("Peek at " + index + " of " + size);
+	}
+
+	return buffer[(head + index) & mask];
+
+    } // peek ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Copy a run of bytes from the head without removing them, as many as are
+     * asked for or as are held, whichever is fewer.
+     *
+     * @param  data   The buffer to receive the bytes.
+     * @param  offset The index at which to place the first byte.
+     * @param  length The most bytes to copy.
+     * @return the number of bytes copied.
+     */
+    public int peek (byte[] data, int offset, int length) {
+
+	int count = Math.min(length, size);
+	int first = Math.min(count, buffer.length - head);
+	System.arraycopy(buffer, head, data, offset, first);
+	System.arraycopy(buffer, 0, data, offset + first, count - first);
+
+	return count;
+
+    } // peek ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Discard bytes from the head.
+     *
+     * @param  count The number of bytes to discard.
+     * @throws RuntimeException if fewer bytes are held.
+     */
+    public void skip (int count) {
+
+	if (count < 0 || count > size) {
+	    throw new RuntimeException("Skip " + count + " of " + size);
+	}
+	head  = (head + count) & mask;
+	size -= count;
+
+    } // skip ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return a copy of the bytes held, in order, leaving them held. */
+    public byte[] toArray () {
+
+	byte[] array = new byte[size];
+	peek(array, 0, size);
+
+	return array;
+
+    } // toArray ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Enlarge the buffer, by doubling, until it can hold the given number of
+     * bytes, moving the bytes held to its start.
+     *
+     * @param  needed The number of bytes the buffer must hold.
+     * @throws RuntimeException if that is too many.
+     */
+    private void grow (int needed) {
+
+	if (needed < 0 || needed > MAX_CAPACITY) {
+	    throw new RuntimeException("Ring cannot hold " + needed + " bytes");
+	}
+	int capacity = buffer.length;
+	while (capacity < needed) {
+	    capacity <<= 1;
+	}
+	byte[] grown = Arrays.copyOf(toArray(), capacity);
+	buffer = grown;
+	mask   = capacity - 1;
+	head   = 0;
+
+    } // grow ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The ring's storage, whose length is a power of two. */
+    private byte[] buffer;
+
+    /** One less than the storage's length, for wrapping positions. */
+    private int    mask;
+
+    /** The position in the storage of the byte at the head. */
+    private int    head;
+
+    /** The number of bytes held. */
+    private int    size;
+
+    /** The capacity of a ring created without one. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** The largest capacity a ring may have. */
+    public static final int MAX_CAPACITY     = 1 << 30;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ByteRing
+// =============================================================================
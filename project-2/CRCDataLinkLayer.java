@@ -1,10 +1,8 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 // =============================================================================
 
 
@@ -26,168 +24,190 @@ public class CRCDataLinkLayer extends DataLinkLayer {
   /**
   * Embed a raw sequence of bytes into a framed sequence.
   *
-  * @param  data The raw sequence of bytes to be framed.
-  * @return A complete frame.
+  * @param  data The raw sequence of bytes to be framed, which is consumed.
+  * @return A complete frame, in a pooled buffer big enough for every byte to
+  *         be escaped.
   */
-  public byte[] createFrame (byte[] data) {
+  public ByteBuffer createFrame (ByteBuffer data) {
 
-    Queue<Byte> framingData = new LinkedList<Byte>();
+    return createFrame(data, sentFrameNumber);
 
-    // Begin with the start tag.
-    framingData.add(startTag);
+  } // createFrame ()
+  // =========================================================================
+  /**
+  * Embed a raw sequence of bytes into a framed sequence with the given frame
+  * number.
+  *
+  * @param  data        The raw sequence of bytes to be framed, which is
+  *                     consumed.
+  * @param  frameNumber The number of the frame.
+  * @return A complete frame, in a pooled buffer big enough for every byte to
+  *         be escaped.
+  */
+  protected ByteBuffer createFrame (ByteBuffer data, byte frameNumber) {
 
-    //add the ACK/NAK or data frame byte
-    //this will be a 0 because it's not an ACK/NAK and there's no status for it
-    framingData.add((byte) 0);
+    return createFrame(data, (byte) 0, frameNumber, -1);
 
-    //we are going to do frame 0 and frame 1, for simplicity's sake
-    framingData.add(sentFrameNumber);
+  } // createFrame ()
+  // =========================================================================
+  /**
+  * Embed a raw sequence of bytes into a framed sequence of the given type and
+  * frame number, with one more byte ahead of the data if given, such as an
+  * acknowledgment riding on a data frame.  The CRC protects that byte just
+  * as it does the data.
+  *
+  * @param  data        The raw sequence of bytes to be framed, which is
+  *                     consumed.
+  * @param  type        The frame type byte.
+  * @param  frameNumber The number of the frame.
+  * @param  extra       The byte to carry ahead of the data, as an unsigned
+  *                     value, or -1 for none.
+  * @return A complete frame, in a pooled buffer big enough for every byte to
+  *         be escaped.
+  */
+  protected ByteBuffer createFrame (ByteBuffer data,
+  byte type,
+  byte frameNumber,
+  int extra) {
 
-    //now we add the CRC of the data
-    framingData.add(getCRC8(data));
+    ByteBuffer framingData =
+    framePool.acquire(2 + 2 * (headerSize + 1 + data.remaining()));
 
-    // Add each byte of original data.
-    for (int i = 0; i < data.length; i += 1) {
+    // Begin with the start tag.
+    framingData.put(startTag);
 
-      // If the current data byte is itself a metadata tag, then precede
-      // it with an escape tag.
-      byte currentByte = data[i];
-      if ((currentByte == startTag) ||
-      (currentByte == stopTag) ||
-      (currentByte == escapeTag)) {
+    //add the ACK/NAK or data frame byte, which is 0 for a plain data frame
+    addEscaped(framingData, type);
 
-        framingData.add(escapeTag);
+    //then the frame number, which may look like a tag in a layer that
+    //numbers its frames with more than 0 and 1
+    addEscaped(framingData, frameNumber);
 
-      }
+    //then where the frame is going and where it came from, either of which
+    //may look like a tag
+    addEscaped(framingData, destination);
+    addEscaped(framingData, address);
 
-      // Add the data byte itself.
-      framingData.add(currentByte);
+    //now we add the CRC of the header and the data, so that a damaged frame
+    //number can't pass a retransmitted frame off as a new one.  It can be any
+    //value at all, so it may look like a tag and need escaping like the data.
+    addCRC(framingData,
+    getFrameCRC(type, frameNumber, destination, address, extra, data));
 
+    // Add the extra byte, if any, and then each byte of original data.
+    if (extra >= 0) {
+      addEscaped(framingData, (byte) extra);
     }
-
-    // End with a stop tag.
-    framingData.add(stopTag);
-
-    // Convert to the desired byte array.
-    byte[] framedData = new byte[framingData.size()];
-    Iterator<Byte>  i = framingData.iterator();
-    int             j = 0;
-    while (i.hasNext()) {
-      framedData[j++] = i.next();
+    while (data.hasRemaining()) {
+      addEscaped(framingData, data.get());
     }
 
-    return framedData;
+    // End with a stop tag, and make the frame ready to be read.
+    framingData.put(stopTag);
+    framingData.flip();
+    return framingData;
 
   } // createFrame ()
   // =========================================================================
   /**
-  * Given a message, split the data into frames and return the new byte[] with the
-  * framed data
+  * Add a byte to a frame being built.  If the byte is itself a metadata tag,
+  * then precede it with an escape tag.
   *
-  * @param data The data to be split into frames
-  */
-  public byte[] frameData(byte[] data) {
-    //take the total length of the data and find how many full frames we can make
-    int numFrames = data.length / 8;
-    int remainder = data.length % 8;
-
-    //an arraylist to hold all of the frames that have been processed
-    ArrayList<Byte> processedChunks = new ArrayList<Byte>();
-
-    //so we should split the data into 8 byte chunks and send them off to be framed
-    for(int i = 0; i < numFrames + 1; i++) {
-      if(i < numFrames) {
-        byte[] toFrame = new byte[8];
-
-        //this is the loop to add the byte to an array and send them off to be frames
-        for(int j = 0; j < 8; j++) {
-          toFrame[j] = data[(i*8) + j];
-        }
-
-        //now send that created array to become a frame
-        byte[] framedPortion = createFrame(toFrame);
-
-        //add all of the bytes from the framed chunk to the rest of the message
-        for(byte b: framedPortion) {
-          processedChunks.add(b);
-        }
-      } else {//this must be the remainder frame
-        byte[] toFrame = new byte[remainder];
-
-        //this is the loop to add the byte to an array and send them off to be frames
-        for(int j = 0; j < remainder; j++) {
-          toFrame[j] = data[(i*8) + j];
-        }
-
-        //now send that created array to become a frame
-        byte[] framedPortion = createFrame(toFrame);
-
-        //add all of the bytes from the framed chunk to the rest of the message
-        for(byte b: framedPortion) {
-          processedChunks.add(b);
-        }
-      }
-    }
+  * @param framingData The frame being built.
+  * @param currentByte The byte to add.
+  */
+  protected void addEscaped (ByteBuffer framingData, byte currentByte) {
+
+    if ((currentByte == startTag) ||
+    (currentByte == stopTag) ||
+    (currentByte == escapeTag)) {
+
+      framingData.put(escapeTag);
 
-    //now that all of the data has been processed, we need to convert the
-    //arraylist back into a byte array
-    byte[] dataFramed = new byte[processedChunks.size()];
-    Iterator<Byte> i = processedChunks.iterator();
-    int j = 0;
-    while (i.hasNext()) {
-      dataFramed[j++] = i.next();
     }
 
-    //now return the array with all of the framed data
-    return dataFramed;
-  } //frameData()
+    // Add the data byte itself.
+    framingData.put(currentByte);
+
+  } // addEscaped ()
   // =========================================================================
-  /* Gets the parity of the byte array passed in
+  /**
+  * Gets the CRC that protects a frame whose data is a run of an array: that
+  * of its type, its frame number, its destination and source addresses, and
+  * its data, in that order, by this layer's checksum.  The CRC is worked out
+  * as it goes, so nothing is copied.
   *
-  * @param data The Array of which we are calculating the parity of
-  */
-  public static byte getCRC8(byte[] data) {
-    //create a long with all bits set to 0
-    long dividend = 0L;
-
-    //generator function for CRC8
-    int generator = 0b0000000111010101;
-
-    //now that we have have all the bytes, we need to append the bits
-    //of each to the long
-    for(byte b: data) {
-      //create a for loop for all 8 bits in the byte
-      for(int i = 7; i >= 0; i--) { //start from the left-most bit
-        //get the bit from the byte
-        byte myBit = (byte)((b >>> i) & 1);
-        // System.out.println("Bit to be added: " + myBit);
-
-        //shift the long by 1, and OR the bit above into the last place
-        dividend = (dividend << 1) | myBit;
-        // System.out.println("New Dividend: " + byteToBinary((byte) dividend));
-
-        //if we can XOR the bits, then do it
-        if(((dividend >>> 8) & 1) == 1) {
-          dividend = (dividend ^ generator);
-          // System.out.println("XOR!!! New Dividend: " + byteToBinary((byte) dividend));
-        }
-      }
+  * @param type        The frame type byte, or the status of a response.
+  * @param frameNumber The frame number.
+  * @param destination The address of the station the frame is for.
+  * @param source      The address of the station that sent the frame.
+  * @param data        The array holding the data carried by the frame.
+  * @param offset      The index of the first byte of data.
+  * @param length      The number of bytes of data.
+  */
+  public int getFrameCRC(byte type,
+  byte frameNumber,
+  byte destination,
+  byte source,
+  byte[] data,
+  int offset,
+  int length) {
+    int crc = getHeaderCRC(type, frameNumber, destination, source);
+    return checksum.finish(checksum.update(crc, data, offset, length));
+  } //getFrameCRC()
+  // =========================================================================
+  /**
+  * Gets the CRC that protects a frame whose data is that of a buffer, between
+  * its position and limit, perhaps with one byte more ahead of it.  The
+  * buffer itself is left as it is.
+  *
+  * @param type        The frame type byte, or the status of a response.
+  * @param frameNumber The frame number.
+  * @param destination The address of the station the frame is for.
+  * @param source      The address of the station that sent the frame.
+  * @param extra       The byte ahead of the data, as an unsigned value, or
+  *                    -1 for none.
+  * @param data        The buffer holding the data carried by the frame.
+  */
+  public int getFrameCRC(byte type,
+  byte frameNumber,
+  byte destination,
+  byte source,
+  int extra,
+  ByteBuffer data) {
+    int crc = getHeaderCRC(type, frameNumber, destination, source);
+    if(extra >= 0) {
+      crc = checksum.update(crc, (byte) extra);
     }
-    //we still need to append 6 zeros and xor
-    for(int i = 0; i < 8; i++) {
-      dividend = (dividend << 1) | 0;
-      // System.out.println("New Dividend: " + byteToBinary((byte) dividend));
-
-      //if we can XOR the bits, then do it
-      if(((dividend >>> 8) & 1) == 1) {
-        dividend = (dividend ^ generator);
-        // System.out.println("XOR!!! New Dividend: " + byteToBinary((byte) dividend));
-      }
+    return checksum.finish(checksum.update(crc, data));
+  } //getFrameCRC()
+  // =========================================================================
+  /**
+  * Gets the CRC register after a frame's header, with which the CRC of its
+  * data carries on.
+  */
+  private int getHeaderCRC(byte type,
+  byte frameNumber,
+  byte destination,
+  byte source) {
+    int crc = checksum.update(checksum.start(), type);
+    crc = checksum.update(crc, frameNumber);
+    crc = checksum.update(crc, destination);
+    return checksum.update(crc, source);
+  } //getHeaderCRC()
+  // =========================================================================
+  /**
+  * Add a CRC to a frame being built, most significant byte first, each byte
+  * escaped as needed, since it can be any value at all.
+  *
+  * @param framingData The frame being built.
+  * @param crc         The CRC, in the low bytes.
+  */
+  protected void addCRC(ByteBuffer framingData, int crc) {
+    for(int shift = 8 * (checksum.length() - 1); shift >= 0; shift -= 8) {
+      addEscaped(framingData, (byte) (crc >>> shift));
     }
-
-    //now all that remains should be the remainder of the long division
-    return (byte) dividend;
-  } //getCRC8()
+  } //addCRC()
   // =========================================================================
 
   /**
@@ -201,172 +221,272 @@ public class CRCDataLinkLayer extends DataLinkLayer {
     // Buffer the data to send.
     bufferForSending(data);
 
-    // Send until the buffer is empty.
-    while (sendBuffer.peek() != null) {
+    // If no frame is waiting to be acknowledged, then start sending.
+    // Otherwise, each acknowledgment that arrives sends the next frame, until
+    // the buffer is empty.
+    if (outstandingFrame == null) {
       sendNextFrame();
     }
 
   }
   // =========================================================================
   /**
-  * Determine whether the received, buffered data constitutes a complete
-  * frame.  If so, then remove the framing metadata and return the original
-  * data.  Note that any data preceding an escaped start tag is assumed to be
-  * part of a damaged frame, and is thus discarded.
+  * @return whether every buffered byte has been sent and acknowledged.
+  */
+  public boolean isIdle () {
+
+    return super.isIdle() && outstandingFrame == null;
+
+  } // isIdle ()
+  // =========================================================================
+  /**
+  * Feed the received, buffered bytes to the deframer, which remembers its
+  * place in the frame from one byte to the next.  If they complete a frame,
+  * then return its original data, with the framing metadata removed.  Note
+  * that any data preceding an unescaped start tag is assumed to be part of a
+  * damaged frame, and is thus discarded.
   *
-  * @return If the buffer contains a complete frame, the extracted, original
-  * data; <code>null</code> otherwise.
-  */
-  protected Queue<Byte> processFrame() {
-
-    // Search for a start tag.  Discard anything prior to it.
-    boolean startTagFound = false;
-    Iterator<Byte> i = receiveBuffer.iterator();
-    while (!startTagFound && i.hasNext()) {
-      byte current = i.next();
-      if (current != startTag) {
-        i.remove();
-      } else {
-        startTagFound = true;
+  * @return If the bytes complete a frame, the extracted, original data;
+  * <code>null</code> otherwise.  The extracted data is held in a ring that is
+  * reused for every frame.
+  */
+  protected ByteRing processFrame() {
+
+    while (!receiveBuffer.isEmpty()) {
+      if (deframer.put(receiveBuffer.get())) {
+        return deframer.getFrame();
       }
     }
 
-    // If there is no start tag, then there is no frame.
-    if (!startTagFound) {
-      return null;
-    }
+    return null;
+  } // processFrame ()
+  // ===============================================================
 
 
-    // Try to extract data while waiting for an unescaped stop tag.
-    Queue<Byte> extractedBytes = new LinkedList<Byte>();
-    boolean stopTagFound = false;
-    while (!stopTagFound && i.hasNext()) {
-
-      // Grab the next byte.  If it is...
-      //   (a) An escape tag: Skip over it and grab what follows as
-      //                      literal data.
-      //   (b) A stop tag:    Remove all processed bytes from the buffer and
-      //                      end extraction.
-      //   (c) A start tag:   All that precedes is damaged, so remove it
-      //                      from the buffer and restart extraction.
-      //   (d) Otherwise:     Take it as literal data.
-      byte current = i.next();
-      if (current == escapeTag) {
-        if (i.hasNext()) {
-          current = i.next();
-          extractedBytes.add(current);
-        } else {
-          // An escape was the last byte available, so this is not a
-          // complete frame.
-          return null;
-        }
-      } else if (current == stopTag) {
-        cleanBufferUpTo(i);
-        stopTagFound = true;
-      } else if (current == startTag) {
-        cleanBufferUpTo(i);
-        extractedBytes = new LinkedList<Byte>();
-      } else {
-        extractedBytes.add(current);
-      }
 
-    }
 
-    // If there is no stop tag, then the frame is incomplete.
-    if (!stopTagFound) {
-      return null;
-    }
+  // ===============================================================
+  /**
+  * @return whether the frame just returned by <code>processFrame()</code>
+  *         matched its CRC, as the deframer worked it out while the frame
+  *         arrived, so that it need not be gone over again.
+  */
+  protected boolean isFrameIntact () {
 
-    //lets see what is in the queue
-    Iterator<Byte> j = extractedBytes.iterator();
-    //System.out.println("DEBUG");
-    // while(j.hasNext()) {
-    //   System.out.print(j.next().byteValue() + " ");
-    // }
-    //System.out.println();
+    return deframer.isIntact();
 
-    return extractedBytes;
-  } // processFrame ()
+  } // isFrameIntact ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /**
+  * @return the number of bytes received of the frame underway, if any.
+  */
+  protected int getPendingFrameLength () {
+
+    return deframer.getLength();
+
+  } // getPendingFrameLength ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /**
+  * Discard the frame underway, both the bytes buffered and the deframer's
+  * place in it.
+  */
+  protected void abandonFrame () {
+
+    super.abandonFrame();
+    deframer.reset();
+
+  } // abandonFrame ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /**
+  * @return the start tag, with which every frame begins.
+  */
+  protected int getStartPattern () {
+
+    return startTag & 0xff;
+
+  } // getStartPattern ()
   // ===============================================================
 
 
 
+  // ===============================================================
+  /**
+  * @return the most bytes a frame can occupy: the two tags, plus the header
+  *         and data, every byte of which might be escaped.
+  */
+  protected int getMaxFrameLength () {
+
+    return 2 + 2 * (headerSize + getFrameSize());
+
+  } // getMaxFrameLength ()
+  // ===============================================================
+
+
 
   // ===============================================================
-  private void cleanBufferUpTo (Iterator<Byte> end) {
+  /**
+  * Connect this layer to the physical layer below it, protecting frames
+  * with the checksum named by the system property
+  * <code>dataLinkLayer.checksum</code>: <code>CRC8</code>, unless another is
+  * given.  Every station on a link must use the same one.
+  *
+  * @param physicalLayer The physical layer by which to communicate.
+  */
+  protected void connect (PhysicalLayer physicalLayer) {
+
+    setChecksum(Checksum.forName(System.getProperty("dataLinkLayer.checksum",
+    Checksum.CRC8.getName())));
+    super.connect(physicalLayer);
 
-    Iterator<Byte> i = receiveBuffer.iterator();
-    while (i.hasNext() && i != end) {
-      i.next();
-      i.remove();
+  } // connect ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /**
+  * Set the checksum that protects frames, which sets how long their headers
+  * are, and make room to receive frames with headers that long.
+  *
+  * @param checksum The checksum.
+  */
+  public void setChecksum (Checksum checksum) {
+
+    this.checksum     = checksum;
+    headerSize        = HEADER_FIELDS + checksum.length();
+    responseTemplates = new byte[256][][];
+    if (deframer != null) {
+      setFrameSize(getFrameSize());
     }
 
-  }
+  } // setChecksum ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /** @return the checksum that protects frames. */
+  public Checksum getChecksum () {
+
+    return checksum;
+
+  } // getChecksum ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /**
+  * Set the most data bytes per frame, and make room to receive frames that
+  * large.
+  *
+  * @param frameSize The most data bytes per frame.
+  */
+  public void setFrameSize (int frameSize) {
+
+    super.setFrameSize(frameSize);
+    deframer      = new Deframer(startTag, stopTag, escapeTag,
+    getMaxFrameLength(), checksum, HEADER_FIELDS);
+    receivedFrame = new byte[getMaxFrameLength()];
+
+  } // setFrameSize ()
+  // ===============================================================
+
+
+
+  // ===============================================================
+  /**
+  * @return the bytes of an exchange besides its data: the tags and header
+  *         of the frame, and of the response to it.
+  */
+  protected int getFrameOverhead () {
+
+    return 2 * (2 + headerSize);
+
+  } // getFrameOverhead ()
+  // ===============================================================
+
+
+
   // ===============================================================
   /**
   * An entire frame has been received.  Complete its processing, which may
   * involve checking its correctness, responding to the sender, and/or
   * delivering the frame to the client (if correct).  Called by
-  * <code>receive()</code>.
+  * <code>receiveBytes()</code>.
   *
   * @param data The de-tagged contents extracted from the frame.
-  * @see   DataLinkLayer.receive
-  */
-  protected void finishFrameReceive (Queue<Byte> data) {
-    //we need to extract the metadata out of the frame
-    Iterator<Byte> i = data.iterator();
-
-    //first is the whether or not this is an ACK/NAK frame
-    if(i.hasNext()) {
-      byte ackStatus = i.next();
-      if(ackStatus >> 4 == 1) {//we do nothing, because finishFrameSend will be called to parse response
-        //then we just get out of here
-        ackStuff = data;
-        return;
-      }
+  * @see   DataLinkLayer.receiveBytes
+  */
+  protected void finishFrameReceive (ByteRing data) {
+    //anything too short to hold a header must have been damaged beyond
+    //recognition, so drop it and let the sender time out
+    int length = data.size();
+    if(length < headerSize) {
+      return;
     }
 
-    //next is the frame number
-    byte frameNumber = -1;
-    if(i.hasNext()) {
-      frameNumber = i.next();
-    }
+    //copy the frame into space reused for every frame; the deframer never
+    //lets a frame grow longer than that
+    byte[] contents = receivedFrame;
+    data.peek(contents, 0, length);
 
-    //next we do the CRC checksum
-    byte crc = 0;
-    if(i.hasNext()) {
-      crc = i.next();
-    }
+    //the header is the type (or response status), the frame number, the
+    //destination and source addresses, and the CRC
+    byte ackStatus   = contents[0];
+    byte frameNumber = contents[1];
+    byte frameDest   = contents[2];
+    byte frameSource = contents[3];
 
+    //frames for other stations are none of our business
+    if(frameDest != address && frameDest != BROADCAST) {
+      return;
+    }
 
-    //the rest of the frame is the data
-    byte[] extractedData = new byte[data.size() - 3];
-    for(int j = 0; j < extractedData.length && i.hasNext(); j++) {
-      extractedData[j] = i.next();
+    if(ackStatus >> 4 == 1) {
+      //this is a response to a frame that we sent, so deal with it right
+      //away instead of stashing it for later
+      receiveResponse(contents, length);
+      return;
     }
 
-    //send this data to get CRC
-    byte messageCRC = getCRC8(extractedData);
+    //anything that is neither a response nor a data frame must have been
+    //damaged, so drop it and let the sender time out
+    if(ackStatus != 0) {
+      return;
+    }
 
-    //if this doesn't match, then send NAK frame
-    if(messageCRC != crc) {
+    //if the CRC doesn't match, then send NAK frame
+    if(!isFrameIntact()) {
       //System.out.println("CRC doesn't match, sending NAK frame");
-      sendNAKFrame(receivedFrameNumber);
+      sendNAKFrame(receivedFrameNumber, frameSource);
       return;
     } else if(frameNumber != receivedFrameNumber) {
       //the only way that these would be out of sync is
       //if the ACK frame didn't go through correctly.
       //so send an ACK Frame with the other confirmation number
       if(receivedFrameNumber == 0) {
-        sendACKFrame((byte) 1);
+        sendACKFrame((byte) 1, frameSource);
       } else {
-        sendACKFrame((byte) 0);
+        sendACKFrame((byte) 0, frameSource);
       }
       return;
-    } else {//the data is legit, pass it to the host
-      client.receive(extractedData);
+    } else {//the data is legit, so pass the rest of the frame to the host
+      client.receive(contents, headerSize, length - headerSize);
       //System.out.println("Sending ACK FRAME! NOICE");
-      sendACKFrame(receivedFrameNumber);
+      sendACKFrame(receivedFrameNumber, frameSource);
       if(receivedFrameNumber == 0) {
         receivedFrameNumber = 1;
         //System.out.println("Setting receivedFrameNumber to " + receivedFrameNumber);
@@ -378,44 +498,155 @@ public class CRCDataLinkLayer extends DataLinkLayer {
   } //finishFrameReceive()
   // ===============================================================
 
+  /**
+  * A response has arrived for a frame that we sent.  Check that it arrived
+  * intact and that it is about the frame we are waiting on, and if so, either
+  * move on to the next frame or send this one again.
+  *
+  * @param contents The de-tagged contents of the response frame.
+  * @param length   The length of the response frame.
+  */
+  private void receiveResponse(byte[] contents, int length) {
+    //a response is exactly a header, with no data; a damaged response can't
+    //be trusted either way, so drop it and let the timer send the frame again
+    if(length != headerSize || !isFrameIntact()) {
+      return;
+    }
+    byte status = contents[0];
+    byte frameNumber = contents[1];
+
+    //a response to an earlier copy of a frame that has already been
+    //acknowledged is just a duplicate, so ignore it too
+    if(outstandingFrame == null || frameNumber != sentFrameNumber) {
+      return;
+    }
+
+    responseStatus = status;
+    recordExchange(outstandingFrame.remaining() + 2 + headerSize,
+    status == ACK);
+    if(finishFrameSend()) {
+      //the frame made it, so move on to the next one
+      retransmitTimer.cancel();
+      sendNextFrame();
+    } else {
+      transmitOutstandingFrame();
+    }
+  } //receiveResponse()
+  // ===============================================================
+
   /* Sends a NAK frame to the host, requiring it to send the frame again
   */
-  protected void sendNAKFrame(byte num) {
-    byte[] nakFrame = new byte[5];
-
-    //start tag
-    nakFrame[0] = startTag;
-    //NAK byte = 0b00010000
-    nakFrame[1] = (byte) 16;
-    //frame number of error
-    nakFrame[2] = num;
-    //CRC of the stuff before
-    byte[] thing = {(byte) 16, receivedFrameNumber};
-    nakFrame[3] = getCRC8(thing);
-    //stop tag
-    nakFrame[4] = stopTag;
-
-    transmit(nakFrame);
+  protected void sendNAKFrame(byte num, byte dest) {
+    sendResponseFrame(NAK, num, dest);
+  }
+  // ===============================================================
+
+  /* Sends an ACK frame to the host, letting it send the next frame
+  */
+  protected void sendACKFrame(byte num, byte dest) {
+    sendResponseFrame(ACK, num, dest);
   }
   // ===============================================================
 
-  protected void sendACKFrame(byte num) {
-    byte[] ackFrame = new byte[5];
+  /**
+  * Send a response frame: a header with the status, the frame number it is
+  * about, the addresses, and the CRC of those, all escaped like any other
+  * frame.  A response depends on nothing else, so each is built just once,
+  * the first time it is sent, and kept as a template to be sent as it is
+  * every time after that.
+  *
+  * @param status Either <code>ACK</code> or <code>NAK</code>, or another
+  *               response status of a subclass.
+  * @param num    The number of the frame being responded to.
+  * @param dest   The address of the station that sent that frame.
+  */
+  protected void sendResponseFrame(byte status, byte num, byte dest) {
+    responseFramesSent += 1;
+
+    //responses to each station are kept by status, of which the low four
+    //bits differ, and frame number
+    byte[][] templates = responseTemplates[dest & 0xff];
+    if(templates == null) {
+      templates = new byte[16 * 256][];
+      responseTemplates[dest & 0xff] = templates;
+    }
+    int index = (status & 0x0f) << 8 | (num & 0xff);
+    byte[] template = templates[index];
+    if(template == null || template[1] != status) {
+      ByteBuffer frame = ByteBuffer.allocate(2 + 2 * headerSize);
+      frame.put(startTag);
+      addEscaped(frame, status);
+      addEscaped(frame, num);
+      addEscaped(frame, dest);
+      addEscaped(frame, address);
+      addCRC(frame,
+      getFrameCRC(status, num, dest, address, frame.array(), 0, 0));
+      frame.put(stopTag);
+      template = Arrays.copyOf(frame.array(), frame.position());
+      templates[index] = template;
+    }
+    transmit(template);
+  } //sendResponseFrame()
+  // ===============================================================
 
-    //start tag
-    ackFrame[0] = startTag;
-    //ACK byte = 0b00010001
-    ackFrame[1] = (byte) 17;
-    //frame number of error
-    ackFrame[2] = num;
-    //CRC of the stuff before
-    byte[] thing = {(byte) 17, receivedFrameNumber};
-    ackFrame[3] = getCRC8(thing);
-    //stop tag
-    ackFrame[4] = stopTag;
+  /**
+  * Build and send a response frame that carries one byte more than its
+  * header, such as the length of a run of frames it is about, protected by
+  * the CRC as data would be.  These are built afresh each time, in a
+  * pooled buffer that is free again once it has been handed on.
+  *
+  * @param status A response status of a subclass.
+  * @param num    The number of the frame being responded to.
+  * @param dest   The address of the station that sent that frame.
+  * @param extra  The byte to carry after the header.
+  */
+  protected void sendResponseFrame(byte status, byte num, byte dest,
+  byte extra) {
+    responseFramesSent += 1;
+    ByteBuffer frame = framePool.acquire(2 + 2 * (headerSize + 1));
+    frame.put(startTag);
+    addEscaped(frame, status);
+    addEscaped(frame, num);
+    addEscaped(frame, dest);
+    addEscaped(frame, address);
+    addCRC(frame,
+    getFrameCRC(status, num, dest, address, extra & 0xff, NO_DATA));
+    addEscaped(frame, extra);
+    frame.put(stopTag);
+    frame.flip();
+    transmit(frame);
+    framePool.release(frame);
+  } //sendResponseFrame()
+  // ===============================================================
 
-    transmit(ackFrame);
-  }
+  /**
+  * @return the number of response frames, ACKs and NAKs, sent so far.
+  */
+  public long getResponseFramesSent() {
+    return responseFramesSent;
+  } //getResponseFramesSent()
+  // ===============================================================
+
+  /**
+  * Frame some contents as they are: a start tag, then each byte, escaped as
+  * needed, then a stop tag.
+  *
+  * @param  contents The bytes to frame, header included, which are left in
+  *                  the ring.
+  * @return the frame, ready to be read, in a buffer taken from
+  *         <code>framePool</code>.
+  */
+  protected ByteBuffer reframe(ByteRing contents) {
+    int length = contents.size();
+    ByteBuffer framingData = framePool.acquire(2 + 2 * length);
+    framingData.put(startTag);
+    for(int i = 0; i < length; i++) {
+      addEscaped(framingData, contents.peek(i));
+    }
+    framingData.put(stopTag);
+    framingData.flip();
+    return framingData;
+  } //reframe()
   // ===============================================================
 
   /**
@@ -424,92 +655,70 @@ public class CRCDataLinkLayer extends DataLinkLayer {
   */
   protected void sendNextFrame() {
 
-    // Extract a frame-worth of data from the sending buffer.
-    int frameSize = ((sendBuffer.size() < MAX_FRAME_SIZE)
-    ? sendBuffer.size()
-    : MAX_FRAME_SIZE);
-    byte[]         data = new byte[frameSize];
-    Iterator<Byte>    i = sendBuffer.iterator();
-    for (int j = 0; j < frameSize; j += 1) {
-      data[j] = i.next();
-      i.remove();
+    // The frame last sent, if any, has been acknowledged, so its buffer is
+    // free again.
+    framePool.release(outstandingFrame);
+    outstandingFrame = null;
+
+    // If there is nothing left to send, then we are done.
+    if (sendBuffer.isEmpty()) {
+      return;
     }
 
-    // Frame and transmit this chunk.
-    byte[] framedData = createFrame(data);
-    do {
-      transmit(framedData);
-    } while(!finishFrameSend());
+    // Frame and transmit the next chunk.  It is sent again whenever it is
+    // rejected or goes unanswered, until an acknowledgment arrives.
+    outstandingFrame = createNextFrame();
+    transmitOutstandingFrame();
   } // sendNextFrame ()
 
   // ===============================================================
 
   /**
-  * Complete the process of sending a frame.  This method will examine the recieved data
-  * from the response of the receiver, and return whether we can send the next frame
-  * not.
+  * Transmit the frame awaiting acknowledgment, and start the timer that will
+  * transmit it again if no response arrives in time.
+  */
+  private void transmitOutstandingFrame() {
+    if (retransmitTimer != null) {
+      retransmitTimer.cancel();
+    }
+    transmit(outstandingFrame);
+    retransmitTimer = setTimer(Scheduler.millis(TIMEOUT_INTERVAL), retransmit);
+  } // transmitOutstandingFrame ()
+
+  // ===============================================================
+
+  /**
+  * No response arrived for the frame awaiting acknowledgment, so count the
+  * exchange as failed and transmit the frame again.
+  */
+  private void timeOut() {
+    recordExchange(outstandingFrame.remaining(), false);
+    transmitOutstandingFrame();
+  } // timeOut ()
+
+  // ===============================================================
+
+  /**
+  * Complete the process of sending a frame.  This method will examine the response
+  * from the receiver, which has already been checked, and return whether we can send
+  * the next frame or not.
   *
   * @return Return whether we need to send the frame again or not
   */
   protected boolean finishFrameSend() {
-    //we can expect the response to be 2 bytes long, one with the
-    //ACK/NAK frame and one with the CRC of that data to make sure
-    //that is arrived okay
-    Iterator<Byte> responseMessage;
-    if(ackStuff != null) {
-      responseMessage = ackStuff.iterator();
-    } else {
-        //something has went wrong. This should fix my null pointer exception
-        return false;
-    }
-
-    if(responseMessage == null) {
+    //a NAK means that the receiver got a damaged copy, so it has to go again
+    if(responseStatus != ACK) {
+      //System.out.println("NAK Frame received. Sending last frame again");
       return false;
     }
-    //parse all the information in the response frame
-    byte messageConfirmation = responseMessage.next();
-    byte frameConfirmation = responseMessage.next();
-    byte CRC = responseMessage.next();
-    byte[] stuff = {messageConfirmation, frameConfirmation};
-
-    //now we can clear the ack buffer
-    while(responseMessage.hasNext()) {
-      try{
-        responseMessage.remove();
-      } catch (IllegalStateException e) {
-        //I really don't know what to do with it
-        //break i guess?
-        break;
-      }
-    }
 
-    //now we do our checks
-    if((messageConfirmation & 0x1) == 0b00000001) {//then our message is a confirmation
-      if(frameConfirmation == sentFrameNumber) {
-        if(sentFrameNumber == 0) {
-          sentFrameNumber = 1;
-          //System.out.println("Setting sentFrameNumber to " + sentFrameNumber);
-          return true;
-        } else {
-          sentFrameNumber = 0;
-          //System.out.println("Setting sentFrameNumber to " + sentFrameNumber);
-          return true;
-        }
-      } else {
-        //there was something wrong with the ack
-        //System.out.println("Frame number or CRC was wrong in ACK frame. Resending.");
-        return false;
-      }
-      //advance the frame number, and return true
-    } else if((messageConfirmation & 0x1) == 0){//then the receiver did not get the frame correctly, and we cannot advance
-      //System.out.println("NAK Frame received. Sending last frame again");
-      return false;
+    //an ACK means that we can advance the frame number
+    if(sentFrameNumber == 0) {
+      sentFrameNumber = 1;
     } else {
-      //something else is wrong. Just send the message again
-      //System.out.println("Something really went wrong with ACK/NAK. Resending.");
-      return false;
+      sentFrameNumber = 0;
     }
-
+    return true;
   }
   // ===============================================================
 
@@ -524,13 +733,52 @@ public class CRCDataLinkLayer extends DataLinkLayer {
   private final byte startTag  = (byte)'{';
   private final byte stopTag   = (byte)'}';
   private final byte escapeTag = (byte)'\\';
+
+  // The length of a frame's header fields before its CRC: type, frame
+  // number, destination, and source.
+  protected static final int HEADER_FIELDS = 4;
+
+  // The checksum that protects frames, and the length of a frame's header:
+  // the fields and the CRC.
+  protected Checksum checksum = Checksum.CRC8;
+  protected int headerSize = HEADER_FIELDS + Checksum.CRC8.length();
+
+  // The status bytes of the response frames.
+  protected static final byte NAK = (byte) 0b00010000;
+  protected static final byte ACK = (byte) 0b00010001;
   // ===============================================================
   //the boolean that dictates the frame number
   private byte sentFrameNumber = 0;
   private byte receivedFrameNumber = 0;
 
-  //a queue that is only used when needed
-  Queue<Byte> ackStuff;
+  //the status of the most recent response to the frame being sent
+  private byte responseStatus;
+
+  //the frame that has been sent but not yet acknowledged, if any, in a
+  //buffer from the frame pool
+  private ByteBuffer outstandingFrame;
+
+  //the timer that will send the outstanding frame again, and what it does
+  private Scheduler.Event retransmitTimer;
+  private final Runnable retransmit = () -> timeOut();
+
+  //the data of a frame that carries none
+  private static final ByteBuffer NO_DATA = ByteBuffer.allocate(0);
+
+  //the response frames built so far, by destination, then by status and
+  //frame number, to be sent again as they are, made anew for each checksum
+  private byte[][][] responseTemplates = new byte[256][][];
+
+  //the number of response frames sent
+  private long responseFramesSent;
+
+  //reused space for the contents of each frame received, made to fit the
+  //frame size
+  protected byte[] receivedFrame;
+
+  //the deframer, which extracts received frames a byte at a time, made to
+  //fit the frame size
+  private Deframer deframer;
   // ===================================================================
-} // class DumbDataLinkLayer
+} // class CRCDataLinkLayer
 // ===================================================================
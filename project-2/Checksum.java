@@ -0,0 +1,461 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A cyclic redundancy check, worked out from tables rather than a bit at a
+ * time.  Each kind is a single shared instance that holds nothing but its
+ * tables, so any number of links may use one at once.  A CRC is carried in
+ * an <code>int</code> register: begin with <code>start()</code>, carry it on
+ * with <code>update()</code> over as many runs of bytes as there are, and
+ * end with <code>finish()</code>, which gives the CRC itself, of
+ * <code>length()</code> bytes.  Nothing is allocated along the way.
+ *
+ * The kinds are:
+ * <ul>
+ *   <li><code>CRC8</code>: polynomial 0xD5, starting from 0, as the CRC
+ *       layer has always used;</li>
+ *   <li><code>CRC16</code>: the CCITT polynomial 0x1021, starting from
+ *       0xFFFF;</li>
+ *   <li><code>CRC32</code>: that of Ethernet and zip, as
+ *       <code>java.util.zip.CRC32</code> gives;</li>
+ *   <li><code>CRC32C</code>: the Castagnoli polynomial, as
+ *       <code>java.util.zip.CRC32C</code> gives, which catches more errors in
+ *       short frames than <code>CRC32</code> does.</li>
+ * </ul>
+ * The 32-bit kinds take eight bytes at a time, with eight tables
+ * (slicing-by-8).
+ *
+ * @file   Checksum.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public abstract class Checksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find a kind of checksum by name.
+     *
+     * @param  name One of <code>CRC8</code>, <code>CRC16</code>,
+     *              <code>CRC32</code>, or <code>CRC32C</code>, in any case.
+     * @return the checksum.
+     * @throws RuntimeException if there is no such checksum.
+     */
+    public static Checksum forName (String name) {
+
+	for (Checksum checksum : ALL) {
+	    if (checksum.name.equalsIgnoreCase(name)) {
+		return checksum;
+	    }
+	}
+	throw new RuntimeException("Unknown checksum " + name);
+
+    } // forName ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the name of this checksum. */
+    public String getName () {
+
+	return name;
+
+    } // getName ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes in the CRC. */
+    public int length () {
+
+	return length;
+
+    } // length ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the register with which a CRC begins. */
+    public abstract int start ();
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Carry a CRC on by one byte.
+     *
+     * @param  crc  The register, for the bytes so far.
+     * @param  next The next byte.
+     * @return the register, for the bytes so far and the next one.
+     */
+    public abstract int update (int crc, byte next);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Carry a CRC on by a run of an array.
+     *
+     * @param  crc    The register, for the bytes so far.
+     * @param  data   The array holding the bytes.
+     * @param  offset The index of the first byte.
+     * @param  length The number of bytes.
+     * @return the register, for the bytes so far and those of the run.
+     */
+    public int update (int crc, byte[] data, int offset, int length) {
+
+	for (int i = offset; i < offset + length; i += 1) {
+	    crc = update(crc, data[i]);
+	}
+
+	return crc;
+
+    } // update ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Carry a CRC on by the bytes of a buffer between its position and
+     * limit, leaving the buffer as it is.
+     *
+     * @param  crc  The register, for the bytes so far.
+     * @param  data The buffer.
+     * @return the register, for the bytes so far and those of the buffer.
+     */
+    public int update (int crc, ByteBuffer data) {
+
+	if (data.hasArray()) {
+	    return update(crc,
+			  data.array(),
+			  data.arrayOffset() + data.position(),
+			  data.remaining());
+	}
+	for (int i = data.position(); i < data.limit(); i += 1) {
+	    crc = update(crc, data.get(i));
+	}
+
+	return crc;
+
+    } // update ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  crc The register, for every byte.
+     * @return the CRC, in the low <code>length()</code> bytes.
+     */
+    public abstract int finish (int crc);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  data   The array holding the bytes.
+     * @param  offset The index of the first byte.
+     * @param  length The number of bytes.
+     * @return the CRC of a run of an array.
+     */
+    public int compute (byte[] data, int offset, int length) {
+
+	return finish(update(start(), data, offset, length));
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a checksum.
+     *
+     * @param name   Its name.
+     * @param length The number of bytes in its CRC.
+     */
+    private Checksum (String name, int length) {
+
+	this.name   = name;
+	this.length = length;
+
+    } // Checksum ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A CRC of at most 16 bits that shifts the register left, most
+     * significant bit first, and is worked out a byte at a time from one
+     * table.
+     */
+    private static class Forward extends Checksum {
+
+	// =====================================================================
+	/**
+	 * @param name       Its name.
+	 * @param width      The number of bits in the CRC: 8 or 16.
+	 * @param polynomial The generator, less its top bit.
+	 * @param initial    The register with which a CRC begins.
+	 */
+	private Forward (String name, int width, int polynomial, int initial) {
+
+	    super(name, width / 8);
+	    this.shift   = width - 8;
+	    this.mask    = (1 << width) - 1;
+	    this.initial = initial;
+
+	    // Each entry is the register after shifting a byte through it.
+	    int top = 1 << (width - 1);
+	    table   = new int[256];
+	    for (int n = 0; n < 256; n += 1) {
+		int crc = n << shift;
+		for (int bit = 0; bit < 8; bit += 1) {
+		    crc = ((crc & top) != 0) ? ((crc << 1) ^ polynomial) : (crc << 1);
+		}
+		table[n] = crc & mask;
+	    }
+
+	} // Forward ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int start () {
+
+	    return initial;
+
+	} // start ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int update (int crc, byte next) {
+
+	    return ((crc << 8) ^ table[((crc >>> shift) ^ next) & 0xff]) & mask;
+
+	} // update ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int update (int crc, byte[] data, int offset, int length) {
+
+	    for (int i = offset; i < offset + length; i += 1) {
+		crc = ((crc << 8) ^ table[((crc >>> shift) ^ data[i]) & 0xff]) &
+		      mask;
+	    }
+
+	    return crc;
+
+	} // update ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int finish (int crc) {
+
+	    return crc;
+
+	} // finish ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The register after shifting each byte value through it. */
+	private final int[] table;
+
+	/** How far the top byte of the register is from the bottom. */
+	private final int   shift;
+
+	/** The bits of the register. */
+	private final int   mask;
+
+	/** The register with which a CRC begins. */
+	private final int   initial;
+	// =====================================================================
+
+    } // class Forward
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A 32-bit CRC that shifts the register right, least significant bit
+     * first, starting from and ending with all bits inverted, as those of
+     * Ethernet and its kin do.  It is worked out eight bytes at a time, each
+     * from a table of its own, and then a byte at a time for any left over.
+     */
+    private static class Reflected extends Checksum {
+
+	// =====================================================================
+	/**
+	 * @param name       Its name.
+	 * @param polynomial The generator, less its top bit, bits reversed.
+	 */
+	private Reflected (String name, int polynomial) {
+
+	    super(name, 4);
+
+	    // The first table shifts one byte through the register, and each
+	    // one after, one more zero byte after that.
+	    tables = new int[8][256];
+	    for (int n = 0; n < 256; n += 1) {
+		int crc = n;
+		for (int bit = 0; bit < 8; bit += 1) {
+		    crc = ((crc & 1) != 0) ? ((crc >>> 1) ^ polynomial) : (crc >>> 1);
+		}
+		tables[0][n] = crc;
+	    }
+	    for (int k = 1; k < 8; k += 1) {
+		for (int n = 0; n < 256; n += 1) {
+		    int previous = tables[k - 1][n];
+		    tables[k][n] = (previous >>> 8) ^ tables[0][previous & 0xff];
+		}
+	    }
+
+	} // Reflected ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int start () {
+
+	    return 0xffffffff;
+
+	} // start ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int update (int crc, byte next) {
+
+	    return (crc >>> 8) ^ tables[0][(crc ^ next) & 0xff];
+
+	} // update ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int update (int crc, byte[] data, int offset, int length) {
+
+	    int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3];
+	    int[] t4 = tables[4], t5 = tables[5], t6 = tables[6], t7 = tables[7];
+
+	    int i   = offset;
+	    int end = offset + length;
+	    for (; i + 8 <= end; i += 8) {
+		int one = crc ^ ((data[i]     & 0xff)       |
+				 (data[i + 1] & 0xff) << 8  |
+				 (data[i + 2] & 0xff) << 16 |
+				 (data[i + 3] & 0xff) << 24);
+		int two = ((data[i + 4] & 0xff)       |
+			   (data[i + 5] & 0xff) << 8  |
+			   (data[i + 6] & 0xff) << 16 |
+			   (data[i + 7] & 0xff) << 24);
+		crc = (t7[one & 0xff]          ^
+		       t6[(one >>> 8) & 0xff]  ^
+		       t5[(one >>> 16) & 0xff] ^
+		       t4[one >>> 24]          ^
+		       t3[two & 0xff]          ^
+		       t2[(two >>> 8) & 0xff]  ^
+		       t1[(two >>> 16) & 0xff] ^
+		       t0[two >>> 24]);
+	    }
+	    for (; i < end; i += 1) {
+		crc = (crc >>> 8) ^ t0[(crc ^ data[i]) & 0xff];
+	    }
+
+	    return crc;
+
+	} // update ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	public int finish (int crc) {
+
+	    return ~crc;
+
+	} // finish ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The register after shifting each byte value, and zeros, through. */
+	private final int[][] tables;
+	// =====================================================================
+
+    } // class Reflected
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The name of this checksum. */
+    private final String name;
+
+    /** The number of bytes in its CRC. */
+    private final int    length;
+
+    /** The checksums. */
+    public static final Checksum CRC8   = new Forward("CRC8", 8, 0xd5, 0);
+    public static final Checksum CRC16  =
+	new Forward("CRC16", 16, 0x1021, 0xffff);
+    public static final Checksum CRC32  = new Reflected("CRC32", 0xedb88320);
+    public static final Checksum CRC32C = new Reflected("CRC32C", 0x82f63b78);
+
+    /** Every checksum, for looking them up by name. */
+    private static final Checksum[] ALL = { CRC8, CRC16, CRC32, CRC32C };
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Checksum
+// =============================================================================
@@ -0,0 +1,433 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A shared medium, like classic Ethernet, on which any number of clients
+ * contend to send.  Senders listen before sending (see
+ * <code>carrierUntil()</code>), but a signal takes the propagation delay to
+ * reach the other clients, so two senders that begin within that delay of
+ * each other both believe the medium to be idle.  Their transmissions then
+ * collide: neither reaches any receiver, each sender hears the other, jams
+ * the medium briefly, stops, and is told of the collision so that it can
+ * back off and try again.  A transmission that collides with nothing reaches
+ * every other client, and its sender is told that it went out.
+ *
+ * Every client is taken to be the propagation delay from every other.
+ *
+ * Two clients may be paired, so that each one's transmissions reach the
+ * other alone.  This addresses stations below the data link layer, whose
+ * one-byte addresses cannot name more than 254 of them; paired stations need
+ * only addresses that differ from each other, and still contend with every
+ * other client for the medium.
+ *
+ * @file   CsmaCdMedium.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class CsmaCdMedium extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an idle medium.
+     */
+    public CsmaCdMedium () {
+
+	active = new ArrayList<Transmission>();
+	peers  = new IdentityHashMap<PhysicalLayer, PhysicalLayer>();
+
+    } // CsmaCdMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return <code>true</code>, since clients contend for this medium. */
+    public boolean detectsCollisions () {
+
+	return true;
+
+    } // detectsCollisions ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Listen to the medium on behalf of a client.  The client hears each
+     * other sender from the propagation delay after it begins until the
+     * propagation delay after it stops, and waits an interframe gap after
+     * that before it may send.
+     *
+     * @param  listener The client physical layer listening.
+     * @return the simulated time until which the listener must wait; a time
+     *         no later than now means that the medium is idle.
+     */
+    public long carrierUntil (PhysicalLayer listener) {
+
+	long now   = scheduler.now();
+	long delay = getPropagationDelay();
+	long until = now;
+	for (Transmission transmission : active) {
+	    if (transmission.sender        != listener             &&
+		transmission.start + delay <= now                  &&
+		transmission.signalEnd + delay > now) {
+		until = Math.max(until,
+				 transmission.signalEnd + delay +
+				 transmissionTime(INTERFRAME_GAP_BITS));
+	    }
+	}
+
+	return until;
+
+    } // carrierUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the backoff slot time: long enough for a signal to cross the
+     *         medium and return, plus a jam.
+     */
+    public long getSlotTime () {
+
+	return 2 * getPropagationDelay() + transmissionTime(JAM_BITS);
+
+    } // getSlotTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Pair two clients, so that each one's transmissions are delivered to the
+     * other alone.
+     *
+     * @param  first  One client physical layer.
+     * @param  second The other.
+     * @throws RuntimeException if either is not registered with this medium.
+     */
+    public void pair (PhysicalLayer first, PhysicalLayer second) {
+
+	checkSender(first);
+	checkSender(second);
+	peers.put(first, second);
+	peers.put(second, first);
+
+    } // pair ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of transmissions that have collided. */
+    public long getCollisions () {
+
+	return collisions;
+
+    } // getCollisions ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of transmissions that went out intact. */
+    public long getSuccesses () {
+
+	return successes;
+
+    } // getSuccesses ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients, contending for the
+     * medium just as a run of bytes does.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit The value to be sent, where <code>false</code> sends a
+     *            <code>0</code> bit, and <code>true</code> sends a
+     *            <code>1</code> bit.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	checkSender(sender);
+	capture(sender, bit);
+	byte[] data = { (byte)(bit ? 0x80 : 0x00) };
+	contend(sender, data, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one client to the other clients, unless it
+     * collides with another transmission.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	contend(sender,
+		Arrays.copyOfRange(data, offset, offset + length),
+		length * BITS_PER_BYTE);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Begin a transmission now.  Every other transmission still on the medium
+     * began too recently for this sender to have heard it, or this sender
+     * did not listen, so the new transmission collides with each of them.
+     * Otherwise it is delivered when its last bit arrives.
+     *
+     * @param sender The client physical layer sending.
+     * @param data   The bits to send, packed most significant first.  The
+     *               medium keeps the array.
+     * @param bits   The number of bits.
+     */
+    private void contend (PhysicalLayer sender, byte[] data, int bits) {
+
+	long now   = scheduler.now();
+	long delay = getPropagationDelay();
+	long jam   = transmissionTime(JAM_BITS);
+
+	// Forget transmissions whose signals have died away everywhere.
+	Iterator<Transmission> i = active.iterator();
+	while (i.hasNext()) {
+	    if (i.next().signalEnd + delay <= now) {
+		i.remove();
+	    }
+	}
+
+	Transmission transmission =
+	    new Transmission(sender, now, now + transmissionTime(bits));
+
+	// The new sender hears the earliest of the others first; each of the
+	// others hears the new sender one propagation delay from now.
+	long heard = Long.MAX_VALUE;
+	for (Transmission other : active) {
+
+	    if (other.sender == sender) {
+		continue;
+	    }
+	    heard = Math.min(heard, Math.max(now, other.start + delay));
+
+	    if (!other.collided) {
+		long detected   = now + delay;
+		other.signalEnd = (detected < other.end
+				   ? detected + jam
+				   : other.end);
+		collide(other, Math.max(detected, other.signalEnd));
+	    }
+
+	}
+
+	if (heard != Long.MAX_VALUE) {
+	    transmission.signalEnd = Math.min(transmission.end, heard + jam);
+	    collide(transmission, Math.max(heard, transmission.signalEnd));
+	} else {
+
+	    // Deliver the run to the sender's peer, or else to each other
+	    // client, when its last bit arrives, and tell the sender once no
+	    // collision can still befall it.
+	    PhysicalLayer peer = peers.get(sender);
+	    if (peer != null) {
+		transmission.deliveries.add(
+		    deliver(peer, transmission.end + delay, data, bits));
+	    } else {
+		for (PhysicalLayer receiver : clients) {
+		    if (receiver != sender) {
+			transmission.deliveries.add(
+			    deliver(receiver, transmission.end + delay, data, bits));
+		    }
+		}
+	    }
+	    transmission.completion =
+		scheduler.scheduleAt(Math.max(transmission.end, now + 2 * delay),
+				     () -> completed(sender));
+
+	}
+
+	active.add(transmission);
+
+    } // contend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Spoil a transmission: none of it reaches any receiver, and its sender
+     * is told of the collision at the given time.
+     *
+     * @param transmission The transmission that collided.
+     * @param time         When the sender learns of it.
+     */
+    private void collide (Transmission transmission, long time) {
+
+	if (debug) {
+	    System.out.printf("CsmaCdMedium.collide(): client %d at %d ns\n",
+			      indexOf(transmission.sender),
+			      time);
+	}
+
+	transmission.collided = true;
+	for (Scheduler.Event delivery : transmission.deliveries) {
+	    delivery.cancel();
+	}
+	if (transmission.completion != null) {
+	    transmission.completion.cancel();
+	}
+	collisions += 1;
+
+	final PhysicalLayer sender = transmission.sender;
+	scheduler.scheduleAt(time, () -> sender.collision());
+
+    } // collide ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Tell a sender that its transmission went out intact.
+     *
+     * @param sender The client physical layer that sent it.
+     */
+    private void completed (PhysicalLayer sender) {
+
+	successes += 1;
+	sender.transmitted();
+
+    } // completed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** One sender's use of the medium. */
+    private static class Transmission {
+
+	// =====================================================================
+	private Transmission (PhysicalLayer sender, long start, long end) {
+
+	    this.sender     = sender;
+	    this.start      = start;
+	    this.end        = end;
+	    this.signalEnd  = end;
+	    this.deliveries = new ArrayList<Scheduler.Event>();
+
+	} // Transmission ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The client physical layer sending. */
+	private final PhysicalLayer         sender;
+
+	/** When the first bit is sent, in nanoseconds. */
+	private final long                  start;
+
+	/** When the last bit would be sent, were there no collision. */
+	private final long                  end;
+
+	/** When the sender actually stops, jam included. */
+	private long                        signalEnd;
+
+	/** Whether the transmission collided. */
+	private boolean                     collided;
+
+	/** The scheduled deliveries to the receivers. */
+	private final List<Scheduler.Event> deliveries;
+
+	/** The scheduled word to the sender of success. */
+	private Scheduler.Event             completion;
+	// =====================================================================
+
+    } // class Transmission
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The transmissions whose signals may still be on the medium. */
+    private List<Transmission> active;
+
+    /** Each paired client's peer. */
+    private Map<PhysicalLayer, PhysicalLayer> peers;
+
+    /** The number of transmissions that have collided. */
+    private long               collisions;
+
+    /** The number of transmissions that went out intact. */
+    private long               successes;
+
+    /** The length of the jam signal sent on detecting a collision. */
+    public static final int    JAM_BITS           = 32;
+
+    /** The quiet time a sender leaves after hearing another finish. */
+    public static final int    INTERFRAME_GAP_BITS = 96;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class CsmaCdMedium
+// =============================================================================
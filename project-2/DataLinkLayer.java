@@ -1,9 +1,10 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Queue;
-import java.util.Iterator;
+import java.util.SplittableRandom;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 // =============================================================================
@@ -81,15 +82,9 @@ public abstract class DataLinkLayer {
     }
 
 
-    // Register this new data link layer with the physical layer.
-    dataLinkLayer.physicalLayer = physicalLayer;
-    physicalLayer.register(dataLinkLayer);
+    // Register this new data link layer with the physical layer and host.
+    dataLinkLayer.connect(physicalLayer);
     dataLinkLayer.register(host);
-
-    // Create incoming buffer space.
-    dataLinkLayer.bitBuffer     = new LinkedList<Boolean>();
-    dataLinkLayer.receiveBuffer = new LinkedList<Byte>();
-    dataLinkLayer.sendBuffer    = new LinkedList<Byte>();
     return dataLinkLayer;
 
   } // create ()
@@ -97,6 +92,38 @@ public abstract class DataLinkLayer {
 
 
 
+  // =========================================================================
+  /**
+  * Connect this layer to the physical layer below it, and create its buffer
+  * space.  Done by <code>create()</code>, or directly for a layer that serves
+  * no host, such as a port of a <code>Bridge</code>.
+  *
+  * @param physicalLayer The physical layer by which to communicate.
+  */
+  protected void connect (PhysicalLayer physicalLayer) {
+
+    this.physicalLayer = physicalLayer;
+    physicalLayer.register(this);
+
+    // Create incoming buffer space, and the pool into which frames are built.
+    receiveBuffer = new ByteRing();
+    sendBuffer    = new ArrayDeque<ByteBuffer>();
+    transmitQueue = new ArrayDeque<ByteBuffer>();
+    framePool     = new FramePool();
+
+    // Resynchronize after lost or extra bits only if asked to.
+    setResynchronizing(Boolean.getBoolean("dataLinkLayer.resync"));
+
+    // Frame as much data as asked to, adapting to errors only if asked to.
+    setFrameSize(Integer.getInteger("dataLinkLayer.frameSize",
+    DEFAULT_FRAME_SIZE));
+    setAdaptive(Boolean.getBoolean("dataLinkLayer.adaptive"));
+
+  } // connect ()
+  // =========================================================================
+
+
+
 
   // =========================================================================
   // Allow a host to register as the client of this data link layer.
@@ -107,18 +134,36 @@ public abstract class DataLinkLayer {
       throw new RuntimeException("Attempt to double-register");
     }
 
-    // Hold a pointer to the client.
-    this.client = client;
+    // Hold a pointer to the client, and take on its address.
+    this.client  = client;
+    this.address = client.getAddress();
 
   } // register
   // =========================================================================
 
 
 
+  // =========================================================================
+  /**
+  * Address the frames this layer sends to a particular station.  Until this
+  * is called, they are addressed to every station.
+  *
+  * @param destination The address of the station to which to send.
+  */
+  public void setDestination (byte destination) {
+
+    this.destination = destination;
+
+  } // setDestination ()
+  // =========================================================================
+
+
+
   // =========================================================================
   /**
   * Send a sequence of bytes through the physical layer.  Expected to be
-  * called by the client.
+  * called by the client.  Frames are built straight from the given array, so
+  * it must not be modified until it has all been sent.
   *
   * @param data The sequence of bytes to send.
   */
@@ -128,7 +173,7 @@ public abstract class DataLinkLayer {
     bufferForSending(data);
 
     // Send until the buffer is empty.
-    while (sendBuffer.peek() != null) {
+    while (!sendBuffer.isEmpty()) {
       sendNextFrame();
     }
 
@@ -140,15 +185,16 @@ public abstract class DataLinkLayer {
   // =========================================================================
   /**
   * Accept an arbitrary sequence of bytes (of any length) and buffer it for
-  * sending.
+  * sending.  The bytes are not copied; the buffer holds a view of the array
+  * itself, from which frames are later built.
   *
   * @param data The sequence of bytes to buffer.
   */
   protected void bufferForSending (byte[] data) {
 
-    // Add each byte to the sending buffer.
-    for (int i = 0; data != null && i < data.length; i += 1) {
-      sendBuffer.add(data[i]);
+    // Add a view of the bytes to the sending buffer.
+    if (data != null && data.length > 0) {
+      sendBuffer.add(ByteBuffer.wrap(data));
     }
 
   } // bufferForSending ()
@@ -163,20 +209,10 @@ public abstract class DataLinkLayer {
   */
   protected void sendNextFrame() {
 
-    // Extract a frame-worth of data from the sending buffer.
-    int frameSize = ((sendBuffer.size() < MAX_FRAME_SIZE)
-    ? sendBuffer.size()
-    : MAX_FRAME_SIZE);
-    byte[]         data = new byte[frameSize];
-    Iterator<Byte>    i = sendBuffer.iterator();
-    for (int j = 0; j < frameSize; j += 1) {
-      data[j] = i.next();
-      i.remove();
-    }
-
-    // Frame and transmit this chunk.
-    byte[] framedData = createFrame(data);
-    transmit(framedData);
+    // Frame and transmit the next chunk, after which its buffer is free.
+    ByteBuffer frame = createNextFrame();
+    transmit(frame);
+    framePool.release(frame);
 
     // Finish any bookkeeping with respect to this frame having been sent.
     finishFrameSend();
@@ -186,14 +222,46 @@ public abstract class DataLinkLayer {
 
 
 
+  // =========================================================================
+  /**
+  * Frame the next frame-worth of data from the sending buffer, which must not
+  * be empty.  The data is framed from a slice of the buffered array itself,
+  * and the array is dropped from the buffer once it has all been framed.
+  *
+  * @return the frame, in a buffer taken from <code>framePool</code>.
+  */
+  protected ByteBuffer createNextFrame () {
+
+    // Limit the view of the buffered array to a frame-worth of data.
+    ByteBuffer data = sendBuffer.peek();
+    int        end  = data.limit();
+    data.limit(Math.min(end, data.position() + currentFrameSize));
+
+    ByteBuffer frame = createFrame(data);
+
+    // Lift the limit, moving past the array if nothing of it remains.
+    data.limit(end);
+    if (!data.hasRemaining()) {
+      sendBuffer.remove();
+    }
+
+    return frame;
+
+  } // createNextFrame ()
+  // =========================================================================
+
+
+
   // =========================================================================
   /**
   * Embed a raw sequence of bytes into a framed sequence.
   *
-  * @param  data The raw sequence of bytes to be framed.
-  * @return A complete frame.
+  * @param  data The raw sequence of bytes to be framed: those between the
+  *              buffer's position and limit, which it consumes.
+  * @return A complete frame, ready to be read, in a buffer taken from
+  *         <code>framePool</code>.
   */
-  abstract protected byte[] createFrame (byte[] data);
+  abstract protected ByteBuffer createFrame (ByteBuffer data);
   // =========================================================================
 
 
@@ -210,76 +278,628 @@ public abstract class DataLinkLayer {
 
   // =========================================================================
   /**
-  * Transmit a sequence of bytes as bits.
+  * Transmit a sequence of bytes as bits.  The whole sequence is handed to the
+  * physical layer at once, which sends the bits most to least significant.
+  * On a contended medium, sequences instead wait their turn in a queue, and
+  * each is sent only once the medium is heard to be idle (see
+  * <code>attemptTransmit()</code>), each copied into a buffer from
+  * <code>framePool</code> that is released once the medium is done with it.
+  *
+  * @param data   The buffer holding the bytes to send.  It belongs to the
+  *               caller, and may be reused as soon as this returns.
+  * @param offset The index of the first byte to send.
+  * @param length The number of bytes to send.
+  */
+  protected void transmit (byte[] data, int offset, int length) {
+
+    if (physicalLayer.detectsCollisions()) {
+      ByteBuffer copy = framePool.acquire(length);
+      copy.put(data, offset, length);
+      copy.flip();
+      transmitQueue.add(copy);
+      if (transmitQueue.size() == 1) {
+        attemptTransmit();
+      }
+      return;
+    }
+
+    if (debug) {
+      System.out.printf("DataLinkLayer.transmit(): Sending %d bytes\n",
+      length);
+    }
+
+    physicalLayer.send(data, offset, length);
+
+  } // transmit ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Transmit the bytes of a buffer between its position and limit, leaving
+  * the position where it is.
+  *
+  * @param frame The frame to send, in a buffer backed by an array.
+  */
+  protected void transmit (ByteBuffer frame) {
+
+    transmit(frame.array(),
+    frame.arrayOffset() + frame.position(),
+    frame.remaining());
+
+  } // transmit ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Transmit a whole array of bytes.
   *
   * @param data The sequence of bytes to send.
   */
   protected void transmit (byte[] data) {
 
-    for (byte b : data) {
+    transmit(data, 0, data.length);
+
+  } // transmit ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Try to put the sequence at the head of the transmit queue onto a contended
+  * medium.  If another sender is heard, wait until it is done and try again
+  * (1-persistent carrier sense).  Otherwise send, and await word from the
+  * medium of either success or a collision.
+  */
+  private void attemptTransmit () {
+
+    ByteBuffer data = transmitQueue.peek();
+    if (data == null) {
+      return;
+    }
 
-      // Transmit one bit at a time, most to least significant.
-      for (int i = BITS_PER_BYTE - 1; i >= 0; i -= 1) {
+    long idleAt = physicalLayer.carrierUntil();
+    if (idleAt > now()) {
+      setTimer(idleAt - now(), attempt);
+      return;
+    }
+
+    if (debug) {
+      System.out.printf("DataLinkLayer.attemptTransmit(): Sending %d bytes" +
+      " after %d collisions\n", data.remaining(), collisions);
+    }
+    physicalLayer.send(data.array(),
+    data.arrayOffset() + data.position(),
+    data.remaining());
+
+  } // attemptTransmit ()
+  // =========================================================================
 
-        // Grab the current bit...
-        boolean bit = ((1 << i) & b) != 0;
 
-        // ...and send it.
-        physicalLayer.send(bit);
 
+  // =========================================================================
+  /**
+  * Called by the physical layer when the sequence at the head of the
+  * transmit queue has gone out on a contended medium without colliding.  Move
+  * on to the next one.
+  */
+  public void transmitted () {
+
+    framePool.release(transmitQueue.remove());
+    collisions = 0;
+    attemptTransmit();
+
+  } // transmitted ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Called by the physical layer when the sequence at the head of the
+  * transmit queue collided on a contended medium.  Back off for a random
+  * number of slot times, chosen from a range that doubles with each
+  * collision (binary exponential backoff), and then try again.  After too
+  * many collisions, give up on the sequence, leaving its recovery to the
+  * layer's retransmission, if any.
+  */
+  public void collision () {
+
+    collisions += 1;
+    if (collisions >= MAX_ATTEMPTS) {
+      if (debug) {
+        System.out.println("DataLinkLayer.collision(): Giving up on a frame");
       }
+      framePool.release(transmitQueue.remove());
+      collisions = 0;
+      attemptTransmit();
+      return;
+    }
+
+    int  exponent = Math.min(collisions, MAX_BACKOFF_EXPONENT);
+    long slots    = random().nextInt(1 << exponent);
+    setTimer(slots * physicalLayer.getSlotTime(), attempt);
 
+  } // collision ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return this layer's source of random backoffs, created when first needed
+  *         so that it can be seeded by this station's place on its medium,
+  *         which, unlike an address, no two stations on a medium share.  It
+  *         is reproducible if the system property
+  *         <code>dataLinkLayer.seed</code> is given.
+  */
+  private SplittableRandom random () {
+
+    if (random == null) {
+      Long seed = Long.getLong("dataLinkLayer.seed");
+      random = (seed == null
+      ? new SplittableRandom()
+      : new SplittableRandom(seed * 257 + physicalLayer.getStation()));
     }
+    return random;
 
-  } // transmit ()
+  } // random ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Turn resynchronizing on or off.  Bytes are normally assembled from every
+  * eight bits received, so a single lost or extra bit misaligns every byte
+  * that follows.  When resynchronizing, this layer instead hunts, bit by bit,
+  * for the pattern that starts a frame, and takes the bit after it as the
+  * beginning of a byte.  It hunts whenever it holds no part of a frame, and
+  * whenever so many bytes have arrived without completing a frame that it
+  * must have lost its way.  Only layers whose frames begin with a fixed byte
+  * can resynchronize.
+  *
+  * @param  resynchronizing Whether to resynchronize.
+  * @throws RuntimeException if this layer's frames have no start pattern.
+  */
+  public void setResynchronizing (boolean resynchronizing) {
+
+    if (resynchronizing && getStartPattern() < 0) {
+      throw new RuntimeException(getClass().getName() +
+      " cannot resynchronize");
+    }
+    this.resynchronizing = resynchronizing;
+    hunting              = resynchronizing;
+    huntWindow           = 0;
+    huntBits             = 0;
+
+  } // setResynchronizing ()
   // =========================================================================
 
 
 
   // =========================================================================
   /**
-  * Deliver a bit into this layer.  Expected to be called by the physical
-  * layer.  Accumulate bits into a buffer, and with each full byte received,
-  * accumulate those bits into a byte buffer.  Each byte added to the buffer
-  * is examined to determine whether a whole frame has been received, and if
-  * so, then processed.
+  * Set the most original data bytes that a frame may contain.  Receivers
+  * accept frames only up to this size, so both ends of a link must use the
+  * same size.  Must be done before any sending.
   *
-  * @param bit The value to receive, where <code>false</code> indicates a
-  *            <code>0</code>, and <code>true</code> indicates a
-  *            <code>1</code>.
+  * @param  frameSize The most data bytes per frame.
+  * @throws RuntimeException if the size is not positive or is larger than
+  *                          <code>MAX_FRAME_SIZE</code>.
   */
-  public void receive(boolean bit) {
+  public void setFrameSize (int frameSize) {
+
+    if (frameSize <= 0 || frameSize > MAX_FRAME_SIZE) {
+      throw new RuntimeException("Invalid frame size " + frameSize);
+    }
+    this.frameSize   = frameSize;
+    currentFrameSize = (adaptive
+    ? Math.min(DEFAULT_FRAME_SIZE, frameSize)
+    : frameSize);
+
+  } // setFrameSize ()
+  // =========================================================================
+
 
-    // Add the new bit to the buffer.
-    bitBuffer.add(bit);
 
-    // If this bit completes a byte, then add it to the byte buffer.
-    if (bitBuffer.size() >= BITS_PER_BYTE) {
+  // =========================================================================
+  /** @return the most original data bytes that a frame may contain. */
+  public int getFrameSize () {
+
+    return frameSize;
+
+  } // getFrameSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Turn adapting the frame size on or off.  A frame long enough to carry
+  * its overhead lightly is also long enough to be likely to be damaged, so
+  * the best size depends on the rate of bit errors.  When adapting, this
+  * layer estimates that rate from how many of its frames fail to get
+  * through, and aims for the size that would deliver the most data at it.
+  * Frames start at no more than <code>DEFAULT_FRAME_SIZE</code> bytes, and
+  * grow, never beyond the frame size, while frames get through cleanly.
+  * They shrink as soon as failures make a smaller size the better one.
+  *
+  * @param adaptive Whether to adapt the frame size.
+  */
+  public void setAdaptive (boolean adaptive) {
+
+    this.adaptive    = adaptive;
+    currentFrameSize = (adaptive
+    ? Math.min(DEFAULT_FRAME_SIZE, frameSize)
+    : frameSize);
+    exchangedBits    = 0;
+    failedExchanges  = 0;
+
+  } // setAdaptive ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return whether this layer adapts its frame size to errors. */
+  public boolean isAdaptive () {
+
+    return adaptive;
+
+  } // isAdaptive ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the original data bytes that the next frame may contain. */
+  public int getCurrentFrameSize () {
+
+    return currentFrameSize;
+
+  } // getCurrentFrameSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Note how an exchange went: a frame sent, and the response to it, if any.
+  * Subclasses that learn whether their frames arrive intact call this, so
+  * that an adapting layer can resize its frames.
+  *
+  * @param length    The number of bytes of the exchange that were sent on
+  *                  the wire, both ways.
+  * @param delivered Whether the frame got through and was acknowledged,
+  *                  rather than being rejected or going unanswered.
+  */
+  protected void recordExchange (int length, boolean delivered) {
+
+    if (!adaptive) {
+      return;
+    }
+
+    // Weigh each exchange more than those before it, so that the estimate
+    // follows a changing error rate.
+    exchangedBits   = exchangedBits * ERROR_DECAY + length * BITS_PER_BYTE;
+    failedExchanges = failedExchanges * ERROR_DECAY + (delivered ? 0 : 1);
+
+    int target = Math.min(optimalFrameSize(), frameSize);
+    if (delivered) {
+      currentFrameSize = Math.min(target, currentFrameSize * 2);
+    } else {
+      currentFrameSize = Math.min(target, currentFrameSize);
+    }
+    currentFrameSize = Math.max(currentFrameSize, 1);
 
-      // Build up the byte from the bits...
-      byte newByte = 0;
-      for (int i = 0; i < BITS_PER_BYTE; i += 1) {
-        bit = bitBuffer.remove();
-        newByte = (byte)((newByte << 1) | (bit ? 1 : 0));
+    if (debug) {
+      System.out.printf("DataLinkLayer.recordExchange(): %s; frames now" +
+      " %d bytes\n", (delivered ? "delivered" : "failed"), currentFrameSize);
+    }
+
+  } // recordExchange ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the size of frame that would deliver the most data at the bit
+  *         error rate estimated so far.  An exchange of n data bytes and h
+  *         bytes of overhead gets through whole with probability
+  *         (1 - p)^(8(n + h)), and of what it carries, n / (n + h) is data;
+  *         the product of the two is greatest where
+  *         n^2 + hn = h / -ln((1 - p)^8).
+  */
+  private int optimalFrameSize () {
+
+    if (failedExchanges == 0) {
+      return Integer.MAX_VALUE;
+    }
+
+    double errorRate = Math.min(failedExchanges / exchangedBits, 0.5);
+    double loss      = -BITS_PER_BYTE * Math.log1p(-errorRate);
+    double overhead  = Math.max(getFrameOverhead(), 1);
+    double best      = (-overhead +
+    Math.sqrt(overhead * overhead + 4 * overhead / loss)) / 2;
+
+    return (int)Math.min(best, Integer.MAX_VALUE);
+
+  } // optimalFrameSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the bytes that each exchange sends on the wire besides the data
+  *         itself: framing, header, and any response.  Subclasses that
+  *         record their exchanges override this.
+  */
+  protected int getFrameOverhead () {
+
+    return 0;
+
+  } // getFrameOverhead ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return whether this layer has nothing left to send.
+  */
+  public boolean isIdle () {
+
+    return sendBuffer.isEmpty();
+
+  } // isIdle ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Arrange for an action to happen after some simulated time has passed, such
+  * as the retransmission of a frame that was never acknowledged.
+  *
+  * @param  delay  How long from now the action should happen, in nanoseconds
+  *                of simulated time.
+  * @param  action The action to perform.
+  * @return the timer, which may be cancelled.
+  */
+  protected Scheduler.Event setTimer (long delay, Runnable action) {
+
+    return physicalLayer.getScheduler().schedule(delay, action);
+
+  } // setTimer ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the current simulated time, in nanoseconds. */
+  protected long now () {
+
+    return physicalLayer.getScheduler().now();
+
+  } // now ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Deliver a run of bytes into this layer.  Expected to be called by the
+  * physical layer, which hands up whole bytes whenever it has them.  Each
+  * byte is added to the byte buffer, and then the buffer is examined to
+  * determine whether a whole frame has been received, and if so, that frame
+  * is processed.
+  *
+  * Bits are assembled into bytes in a register.  While this layer's bytes
+  * line up with those received, each byte passes straight through.  After
+  * a lost or extra bit they may not, and each is then put together from the
+  * bits left in the register and the head of the byte received.
+  *
+  * @param data   The buffer holding the bytes received.  It belongs to the
+  *               caller, and must not be modified or retained.
+  * @param offset The index of the first byte received.
+  * @param length The number of bytes received.
+  */
+  public void receiveBytes (byte[] data, int offset, int length) {
+
+    for (int i = offset; i < offset + length; i += 1) {
+
+      int value = data[i] & 0xff;
+
+      // While hunting for the start of a frame, take the byte a bit at a
+      // time.
+      if (hunting) {
+        receiveBits(value, BITS_PER_BYTE);
+        continue;
       }
 
-      // ...and add it to the byte buffer.
-      receiveBuffer.add(newByte);
-      if (debug) {
-        System.out.printf("DataLinkLayer.receive(): Got new byte = %c\n",
-        newByte);
+      if (heldBits != 0) {
+        int aligned = ((held << (BITS_PER_BYTE - heldBits)) |
+        (value >>> heldBits)) & 0xff;
+        held  = value & ((1 << heldBits) - 1);
+        value = aligned;
+      }
+      receiveByte((byte)value);
+
+    }
+
+  } // receiveBytes ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Deliver a few bits, less than a byte, into this layer.  Expected to be
+  * called by the physical layer with whatever bits of an arrival do not make
+  * up a whole byte.
+  *
+  * @param bits  The bits received, in the low <code>count</code> bits,
+  *              most significant first.
+  * @param count The number of bits received.
+  */
+  public void receiveBits (int bits, int count) {
+
+    for (int i = count - 1; i >= 0; i -= 1) {
+
+      int bit = (bits >>> i) & 1;
+
+      // While hunting for the start of a frame, slide a window over the bits
+      // until it holds the start pattern, which then begins a new byte
+      // stream.
+      if (hunting) {
+        huntWindow = ((huntWindow << 1) | bit) & 0xff;
+        huntBits  += 1;
+        if (huntBits >= BITS_PER_BYTE && huntWindow == getStartPattern()) {
+          if (debug) {
+            System.out.printf("DataLinkLayer.receiveBits(): Synchronized " +
+            "after %d bits\n", huntBits);
+          }
+          hunting = false;
+          abandonFrame();
+          receiveByte((byte)huntWindow);
+        }
+        continue;
       }
 
-      // Attempt to process the buffered bytes as a frame.  If a complete
-      // frame is found and its contents extracted, completing receiving.
-      Queue<Byte> originalData = processFrame();
-      if (originalData != null) {
-        finishFrameReceive(originalData);
+      // Shift the bit into the register, and if it completes a byte, add the
+      // byte to the byte buffer.
+      held      = (held << 1) | bit;
+      heldBits += 1;
+      if (heldBits == BITS_PER_BYTE) {
+        byte newByte = (byte)held;
+        held         = 0;
+        heldBits     = 0;
+        receiveByte(newByte);
       }
 
     }
 
-  } // receive ()
+  } // receiveBits ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Add one byte to the byte buffer, and process any frame that it completes.
+  *
+  * @param newByte The byte received.
+  */
+  private void receiveByte (byte newByte) {
+
+    receiveBuffer.put(newByte);
+    if (debug) {
+      System.out.printf("DataLinkLayer.receiveByte(): Got new byte = %02x\n",
+      newByte & 0xff);
+    }
+
+    // Attempt to process the buffered bytes as a frame.  If a complete
+    // frame is found and its contents extracted, completing receiving.
+    ByteRing originalData = processFrame();
+    if (originalData != null) {
+      finishFrameReceive(originalData);
+    }
+
+    // When resynchronizing, hunt for the next frame whenever nothing
+    // remains buffered (after a frame, or after a byte that cannot begin
+    // one), and after any run of bytes too long to be a frame.
+    int pending = getPendingFrameLength();
+    if (resynchronizing && (pending == 0 || pending > getMaxFrameLength())) {
+      startHunt();
+    }
+
+  } // receiveByte ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the byte with which every frame begins, as an unsigned value, or
+  *         <code>-1</code> if frames have no such byte.  Subclasses that can
+  *         resynchronize override this.
+  */
+  protected int getStartPattern () {
+
+    return -1;
+
+  } // getStartPattern ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the most bytes that one frame can occupy on the wire, framing
+  *         and escapes included.  Subclasses that can resynchronize override
+  *         this.
+  */
+  protected int getMaxFrameLength () {
+
+    return Integer.MAX_VALUE;
+
+  } // getMaxFrameLength ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Begin hunting for the start of a frame, beginning with any bits of an
+  * unfinished byte.
+  */
+  private void startHunt () {
+
+    hunting    = true;
+    huntWindow = held;
+    huntBits   = heldBits;
+    held       = 0;
+    heldBits   = 0;
+    abandonFrame();
+
+  } // startHunt ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the number of bytes received of a frame not yet finished, or 0
+  *         if none is underway.  By default, that is every byte held in the
+  *         byte buffer; subclasses that deframe as bytes arrive override
+  *         this.
+  */
+  protected int getPendingFrameLength () {
+
+    return receiveBuffer.size();
+
+  } // getPendingFrameLength ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Discard any frame underway, as when its bytes can no longer be trusted to
+  * be aligned.  Subclasses that deframe as bytes arrive extend this.
+  */
+  protected void abandonFrame () {
+
+    receiveBuffer.clear();
+
+  } // abandonFrame ()
   // =========================================================================
 
 
@@ -289,12 +909,13 @@ public abstract class DataLinkLayer {
   * An entire frame has been received.  Complete its processing, which may
   * involve checking its correctness, responding to the sender, and/or
   * delivering the frame to the client (if correct).  Called by
-  * <code>receive()</code>.
+  * <code>receiveBytes()</code>.
   *
-  * @param data The de-tagged contents extracted from the frame.
-  * @see   DataLinkLayer.receive
+  * @param data The de-tagged contents extracted from the frame.  The ring
+  *             belongs to this layer, and may be emptied but not retained.
+  * @see   DataLinkLayer.receiveBytes
   */
-  abstract protected void finishFrameReceive (Queue<Byte> data);
+  abstract protected void finishFrameReceive (ByteRing data);
   // =========================================================================
 
 
@@ -306,9 +927,10 @@ public abstract class DataLinkLayer {
   * its correctness, then returning (if possible) the contained data.
   *
   * @return if possible, the extracted data from the frame; <code>null</code>
-  *         otherwise.
+  *         otherwise.  The ring may be one that this layer reuses for every
+  *         frame.
   */
-  abstract protected Queue<Byte> processFrame ();
+  abstract protected ByteRing processFrame ();
   // =========================================================================
 
 
@@ -322,14 +944,63 @@ public abstract class DataLinkLayer {
   /** The host that is using this layer. */
   protected Host           client;
 
-  /** The buffer of bits recently received, building up the current byte. */
-  protected Queue<Boolean> bitBuffer;
-
   /** The buffer of bytes recently received, building up the current frame. */
-  protected Queue<Byte>    receiveBuffer;
+  protected ByteRing       receiveBuffer;
+
+  /** Views of the arrays yet to be sent, each from its first unsent byte. */
+  protected Queue<ByteBuffer> sendBuffer;
+
+  /** The reusable buffers into which frames are built. */
+  protected FramePool      framePool;
+
+  /** Sequences waiting for a contended medium, the first being sent. */
+  private Queue<ByteBuffer> transmitQueue;
+
+  /** Another try at the head of the transmit queue, made as a timer. */
+  private final Runnable   attempt = () -> attemptTransmit();
+
+  /** Collisions suffered by the sequence now being sent. */
+  private int              collisions;
+
+  /** The source of random backoffs. */
+  private SplittableRandom random;
+
+  /** The address of this station. */
+  protected byte           address;
 
-  /** The buffer of data yet to be sent. */
-  protected Queue<Byte>    sendBuffer;
+  /** The address of the station to which frames are sent. */
+  protected byte           destination = BROADCAST;
+
+  /** The most data bytes per frame, and the most the next frame may hold. */
+  private int              frameSize;
+  private int              currentFrameSize;
+
+  /** Whether to adapt the frame size to the error rate. */
+  private boolean          adaptive;
+
+  /**
+  * The bits sent in exchanges, and the exchanges that failed, each weighed
+  * less the longer ago it happened.
+  */
+  private double           exchangedBits;
+  private double           failedExchanges;
+
+  /** Whether to regain byte alignment by hunting for frame starts. */
+  private boolean          resynchronizing;
+
+  /** Whether this layer is now hunting for the start of a frame. */
+  private boolean          hunting;
+
+  /** The last eight bits seen while hunting, and how many were seen. */
+  private int              huntWindow;
+  private int              huntBits;
+
+  /**
+  * The register of bits received that do not yet make up a byte, in its low
+  * <code>heldBits</code> bits.
+  */
+  private int              held;
+  private int              heldBits;
   // =========================================================================
 
 
@@ -340,12 +1011,33 @@ public abstract class DataLinkLayer {
   /** The number of bits in a byte. */
   public static final int     BITS_PER_BYTE    = 8;
 
-  /** The maximum number of original data bytes that a frame may contain. */
-  public static final int     MAX_FRAME_SIZE   = 8;
+  /** The address that every station accepts. */
+  public static final byte    BROADCAST        = (byte)0xff;
+
+  /** The number of original data bytes that a frame contains by default. */
+  public static final int     DEFAULT_FRAME_SIZE = 8;
+
+  /** The most original data bytes that a frame may be set to contain. */
+  public static final int     MAX_FRAME_SIZE   = 1024;
+
+  /**
+  * The weight, relative to the next exchange, that each exchange keeps in
+  * the estimate of the error rate.
+  */
+  public static final double  ERROR_DECAY      = 0.99;
 
-  /** The duration of a timeout event (for flow control). */
+  /**
+  * The duration of a timeout event (for flow control), in milliseconds of
+  * simulated time.
+  */
   public static final long    TIMEOUT_INTERVAL = 250;
 
+  /** The most times a sequence is sent before it is given up on. */
+  public static final int     MAX_ATTEMPTS         = 16;
+
+  /** The collisions after which the backoff range stops doubling. */
+  public static final int     MAX_BACKOFF_EXPONENT = 10;
+
   /** Whether to emit debugging information. */
   public static final boolean debug            = false;
   // =========================================================================
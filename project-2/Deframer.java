@@ -0,0 +1,311 @@
+// =============================================================================
+/**
+ * A streaming deframer for byte-stuffed frames: a start tag, the contents
+ * with any tag among them preceded by an escape tag, and a stop tag.  Bytes
+ * are fed in one at a time as they arrive.  The deframer remembers where it
+ * is in the current frame between bytes, so each byte costs a constant
+ * amount of work however long the frame.  Each finished frame's contents
+ * are left, unescaped, in a ring that is reused for every frame.
+ *
+ * The deframer is always in one of three states:
+ *
+ *   HUNT:     between frames, discarding bytes until a start tag;
+ *   IN_FRAME: within a frame, collecting contents until a stop tag;
+ *   ESCAPED:  within a frame, just after an escape tag, taking the next
+ *             byte as contents whatever it is.
+ *
+ * A start tag within a frame means that the rest of the frame was lost, so
+ * the contents so far are discarded and a new frame begins.  A frame that
+ * grows longer than any frame can be is discarded too, and hunting resumes.
+ *
+ * Given a checksum, the deframer also checks each frame as it arrives: the
+ * CRC is carried on by each byte of contents as it is unescaped, but for
+ * those of the CRC the frame carries, which are set aside, so that once the
+ * stop tag arrives, whether the frame is intact is a single comparison,
+ * with no second pass over it.
+ *
+ * @file   Deframer.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class Deframer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a deframer, hunting for the first frame.
+     *
+     * @param startTag       The byte that begins a frame.
+     * @param stopTag        The byte that ends a frame.
+     * @param escapeTag      The byte that makes the byte after it contents.
+     * @param maxFrameLength The most bytes a frame can occupy, tags and
+     *                       escapes included.
+     */
+    public Deframer (byte startTag,
+		     byte stopTag,
+		     byte escapeTag,
+		     int  maxFrameLength) {
+
+	this(startTag, stopTag, escapeTag, maxFrameLength, null, 0);
+
+    } // Deframer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a deframer, hunting for the first frame, that checks each frame
+     * as it arrives.
+     *
+     * @param startTag       The byte that begins a frame.
+     * @param stopTag        The byte that ends a frame.
+     * @param escapeTag      The byte that makes the byte after it contents.
+     * @param maxFrameLength The most bytes a frame can occupy, tags and
+     *                       escapes included.
+     * @param checksum       The checksum that protects frames, or
+     *                       <code>null</code> for none.
+     * @param crcOffset      The index, within the contents, of the CRC, most
+     *                       significant byte first; it covers every byte of
+     *                       the contents but its own.
+     */
+    public Deframer (byte     startTag,
+		     byte     stopTag,
+		     byte     escapeTag,
+		     int      maxFrameLength,
+		     Checksum checksum,
+		     int      crcOffset) {
+
+	this.startTag       = startTag;
+	this.stopTag        = stopTag;
+	this.escapeTag      = escapeTag;
+	this.maxFrameLength = maxFrameLength;
+	this.checksum       = checksum;
+	this.crcOffset      = crcOffset;
+	this.crcEnd         = (checksum == null
+			       ? crcOffset
+			       : crcOffset + checksum.length());
+	this.frame          = new ByteRing();
+	this.state          = HUNT;
+
+    } // Deframer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Take in the next byte received.
+     *
+     * @param  current The byte.
+     * @return whether the byte finished a frame, whose contents are then in
+     *         <code>getFrame()</code>.
+     */
+    public boolean put (byte current) {
+
+	switch (state) {
+
+	case HUNT:
+	    if (current == startTag) {
+		begin();
+	    }
+	    return false;
+
+	case ESCAPED:
+	    length += 1;
+	    take(current);
+	    state = IN_FRAME;
+	    break;
+
+	default:
+	    length += 1;
+	    if (current == escapeTag) {
+		state = ESCAPED;
+	    } else if (current == stopTag) {
+		state  = HUNT;
+		length = 0;
+		intact = (checksum != null &&
+			  frame.size() >= crcEnd &&
+			  checksum.finish(crc) == received);
+		return true;
+	    } else if (current == startTag) {
+		begin();
+	    } else {
+		take(current);
+	    }
+	    break;
+
+	}
+
+	// A frame this long must have lost its stop tag.
+	if (length > maxFrameLength) {
+	    reset();
+	}
+
+	return false;
+
+    } // put ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the contents of the frame most recently finished.  The ring is
+     *         reused for the next frame, and so must not be retained.
+     */
+    public ByteRing getFrame () {
+
+	return frame;
+
+    } // getFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return whether the frame most recently finished is long enough to
+     *         carry a CRC, and that CRC matches its contents.  Always
+     *         <code>false</code> if this deframer has no checksum.
+     */
+    public boolean isIntact () {
+
+	return intact;
+
+    } // isIntact ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of bytes taken in of the frame underway, tags and
+     *         escapes included, or 0 if between frames.
+     */
+    public int getLength () {
+
+	return length;
+
+    } // getLength ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** Abandon any frame underway, and hunt for the next. */
+    public void reset () {
+
+	state  = HUNT;
+	length = 0;
+	frame.clear();
+
+    } // reset ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** Begin a new frame, its start tag just taken in. */
+    private void begin () {
+
+	state  = IN_FRAME;
+	length = 1;
+	frame.clear();
+	if (checksum != null) {
+	    crc      = checksum.start();
+	    received = 0;
+	}
+
+    } // begin ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Take a byte of contents, and carry the CRC on by it, or set it aside as
+     * part of the CRC that the frame carries.
+     *
+     * @param current The byte, unescaped.
+     */
+    private void take (byte current) {
+
+	if (checksum != null) {
+	    int index = frame.size();
+	    if (index >= crcOffset && index < crcEnd) {
+		received = (received << 8) | (current & 0xff);
+	    } else {
+		crc = checksum.update(crc, current);
+	    }
+	}
+	frame.put(current);
+
+    } // take ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The framing tags. */
+    private final byte     startTag;
+    private final byte     stopTag;
+    private final byte     escapeTag;
+
+    /** The most bytes a frame can occupy. */
+    private final int      maxFrameLength;
+
+    /**
+     * The checksum that protects frames, if any, and where, within the
+     * contents, the CRC that a frame carries begins and ends.
+     */
+    private final Checksum checksum;
+    private final int      crcOffset;
+    private final int      crcEnd;
+
+    /** The contents of the frame underway, or just finished. */
+    private final ByteRing frame;
+
+    /**
+     * The CRC register of the frame underway, and the CRC that it carries,
+     * so far as they have arrived.
+     */
+    private int            crc;
+    private int            received;
+
+    /** Whether the frame just finished matched its CRC. */
+    private boolean        intact;
+
+    /** Where the deframer is: one of the states below. */
+    private int            state;
+
+    /** The bytes taken in of the frame underway. */
+    private int            length;
+
+    /** The states. */
+    private static final int HUNT     = 0;
+    private static final int IN_FRAME = 1;
+    private static final int ESCAPED  = 2;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Deframer
+// =============================================================================
@@ -0,0 +1,363 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A full-duplex point-to-point link between exactly two physical layers, each
+ * of which runs on a thread of its own.  Each direction is its own
+ * single-producer, single-consumer ring of bytes: the sender's thread adds
+ * the bytes it transmits, and the receiver's thread removes them and posts
+ * them to its physical layer.  The two directions share nothing, so neither
+ * ever waits for the other.
+ *
+ * Because the two ends run concurrently, this medium keeps real time rather
+ * than simulated time: each client gets a real-time <code>Scheduler</code> of
+ * its own, whose event loop is run by that client's thread.  The bit rate and
+ * propagation delay do not apply; bytes move as fast as the threads can move
+ * them.  A ring that is full drops what is sent to it, just as a congested
+ * link would, and leaves recovery to the data link layer's timeouts.
+ *
+ * The ring capacity is taken from the system property
+ * <code>medium.ringCapacity</code> (in bytes), and each direction flips bits
+ * with the probability <code>medium.errorProbability</code> (defaulting to
+ * none), reproducibly if <code>medium.seed</code> is given.
+ *
+ * @file   DuplexMedium.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class DuplexMedium extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium configured by the system properties described above.
+     */
+    public DuplexMedium () {
+
+	int    capacity         = Integer.getInteger("medium.ringCapacity",
+						     DEFAULT_RING_CAPACITY);
+	double errorProbability =
+	    Double.parseDouble(System.getProperty("medium.errorProbability",
+						  "0"));
+	Long   seed             = Long.getLong("medium.seed");
+
+	rings        = new SpscByteRing[CLIENTS];
+	schedulers   = new Scheduler[CLIENTS];
+	threads      = new Thread[CLIENTS];
+	noise        = new NoiseEngine[CLIENTS];
+	partialByte  = new int[CLIENTS];
+	partialBits  = new int[CLIENTS];
+	droppedBytes = new long[CLIENTS];
+	for (int i = 0; i < CLIENTS; i += 1) {
+	    rings[i] = new SpscByteRing(capacity);
+	    if (errorProbability > 0.0) {
+		noise[i] = (seed == null
+			    ? new NoiseEngine(errorProbability)
+			    : new NoiseEngine(errorProbability, seed + i));
+	    }
+	}
+
+    } // DuplexMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Register one of the two ends of the link, giving it a real-time
+     * scheduler of its own.
+     *
+     * @param  client The physical layer of a stack to connect to this medium.
+     * @throws RuntimeException if two other clients are already registered.
+     */
+    public void register (PhysicalLayer client) {
+
+	if (indexOf(client) >= 0) {
+	    return;
+	}
+	if (clients.length == CLIENTS) {
+	    throw new RuntimeException("A duplex medium connects only " +
+				       CLIENTS + " clients");
+	}
+
+	super.register(client);
+	schedulers[indexOf(client)] = new Scheduler(true);
+
+    } // register ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  client A physical layer connected to this medium.
+     * @return the scheduler run by the given client's thread.
+     */
+    public Scheduler getScheduler (PhysicalLayer client) {
+
+	int index = indexOf(client);
+	return (index < 0 ? scheduler : schedulers[index]);
+
+    } // getScheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Start a thread for each end of the link.  From here on, each client, and
+     * everything above it in its stack, must be used only from its own thread,
+     * by way of <code>Scheduler.post()</code> on its scheduler.
+     *
+     * @throws RuntimeException if the link does not yet have two ends, or has
+     *                          already been started.
+     */
+    public void start () {
+
+	if (clients.length != CLIENTS) {
+	    throw new RuntimeException("A duplex medium needs " + CLIENTS +
+				       " clients to start");
+	}
+	if (running) {
+	    throw new RuntimeException("Duplex medium already started");
+	}
+
+	running = true;
+	for (int i = 0; i < CLIENTS; i += 1) {
+	    final int index = i;
+	    threads[i] = new Thread(() -> runEndpoint(index),
+				    "DuplexMedium-" + i);
+	    threads[i].start();
+	}
+
+    } // start ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Stop both threads, waiting for each to finish what it is doing.  Once
+     * this returns, the clients may again be used from the calling thread.
+     */
+    public void stop () {
+
+	running = false;
+	for (int i = 0; i < CLIENTS; i += 1) {
+	    if (threads[i] == null) {
+		continue;
+	    }
+	    try {
+		threads[i].join();
+	    } catch (InterruptedException e) {
+		throw new RuntimeException("Interrupted stopping the medium");
+	    }
+	    threads[i] = null;
+	}
+
+    } // stop ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of bytes dropped because a ring was full.  Only
+     *         meaningful once the medium is stopped.
+     */
+    public long getDroppedBytes () {
+
+	return droppedBytes[0] + droppedBytes[1];
+
+    } // getDroppedBytes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit to the other end of the link.  Bits are gathered into bytes,
+     * most significant first, and each byte enters the ring once it is whole.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit The value to be sent, where <code>false</code> sends a
+     *            <code>0</code> bit, and <code>true</code> sends a
+     *            <code>1</code> bit.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	checkSender(sender);
+	int index = indexOf(sender);
+
+	partialByte[index] = (partialByte[index] << 1) | (bit ? 1 : 0);
+	partialBits[index] += 1;
+	if (partialBits[index] == BITS_PER_BYTE) {
+	    byte[] data = { (byte)partialByte[index] };
+	    partialByte[index] = 0;
+	    partialBits[index] = 0;
+	    transmit(sender, data, 0, 1);
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes to the other end of the link, by adding them to the
+     * ring for that direction.  If the ring lacks room for the whole run, the
+     * run is dropped.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	int index = indexOf(sender);
+
+	// The ring copies the bytes in, so only a run that the channel harms
+	// needs a copy of its own.
+	NoiseEngine channel = noise[index];
+	if (channel != null) {
+	    if (channel.bitsUntilError() >= (long)length * BITS_PER_BYTE) {
+		channel.skip(length);
+	    } else {
+		byte[] noisyData = Arrays.copyOfRange(data,
+						      offset,
+						      offset + length);
+		channel.corrupt(noisyData, 0, length);
+		captureDamage(sender,
+			      clients[CLIENTS - 1 - index],
+			      data,
+			      offset,
+			      noisyData,
+			      length);
+		data   = noisyData;
+		offset = 0;
+	    }
+	}
+
+	if (!rings[index].offer(data, offset, length)) {
+	    if (debug) {
+		System.out.printf("DuplexMedium.transmit(): dropped %d bytes\n",
+				  length);
+	    }
+	    droppedBytes[index] += length;
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The event loop of one end of the link.  Perform whatever its scheduler
+     * has come due, and deliver whatever has arrived on its incoming ring,
+     * resting briefly whenever there is nothing to do.
+     *
+     * @param index The position of the client in <code>clients</code>.
+     */
+    private void runEndpoint (int index) {
+
+	PhysicalLayer client    = clients[index];
+	Scheduler     scheduler = schedulers[index];
+	SpscByteRing  incoming  = rings[CLIENTS - 1 - index];
+	byte[]        buffer    = new byte[DELIVERY_SIZE];
+
+	while (running) {
+
+	    boolean busy  = scheduler.runDue();
+	    int     count = incoming.poll(buffer, 0, buffer.length);
+	    if (count > 0) {
+		client.post(Arrays.copyOf(buffer, count),
+			    count * BITS_PER_BYTE);
+		busy = true;
+	    }
+	    if (!busy) {
+		LockSupport.parkNanos(IDLE_PARK_NANOS);
+	    }
+
+	}
+
+    } // runEndpoint ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The ring for each direction, indexed by the sending client. */
+    private final SpscByteRing[] rings;
+
+    /** The real-time scheduler of each client. */
+    private final Scheduler[]    schedulers;
+
+    /** The thread running each client's event loop. */
+    private final Thread[]       threads;
+
+    /** The noise on each direction, or <code>null</code> for none. */
+    private final NoiseEngine[]  noise;
+
+    /** The bits of an unfinished byte sent by each client, and their count. */
+    private final int[]          partialByte;
+    private final int[]          partialBits;
+
+    /** The bytes each client has lost to a full ring; written by its thread. */
+    private final long[]         droppedBytes;
+
+    /** Whether the endpoint threads should keep going. */
+    private volatile boolean     running;
+
+    /** The number of clients on a duplex link. */
+    private static final int     CLIENTS               = 2;
+
+    /** The default capacity of each ring: 64 KB. */
+    public static final int      DEFAULT_RING_CAPACITY = 1 << 16;
+
+    /** The most bytes delivered to a client at once. */
+    private static final int     DELIVERY_SIZE         = 4096;
+
+    /** How long an idle endpoint thread rests, in nanoseconds. */
+    private static final long    IDLE_PARK_NANOS       = 10000L;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class DuplexMedium
+// =============================================================================
@@ -0,0 +1,65 @@
+// =============================================================================
+/**
+ * 4B/5B coding, as used by FDDI and 100 Mb/s Ethernet: each half byte is
+ * sent as a 5-bit symbol with at most one leading and two trailing zeros,
+ * so that the signal changes often enough for the receiver to keep its
+ * clock, at the cost of a quarter more bits on the medium.  Of the 32
+ * symbols, 16 carry data; <code>11111</code> is idle, and fills out runs;
+ * the rest are code violations.
+ *
+ * @file   FourBFiveBLineCoding.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class FourBFiveBLineCoding extends LineCoding {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** Build the tables. */
+    public FourBFiveBLineCoding () {
+
+	super(2 * SYMBOL_BITS, (IDLE_SYMBOL << SYMBOL_BITS) | IDLE_SYMBOL);
+
+    } // FourBFiveBLineCoding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  value A data byte.
+     * @return its 10-bit codeword: the symbol of the high half byte, followed
+     *         by that of the low.
+     */
+    protected int encodeByte (int value) {
+
+	return (SYMBOLS[value >>> 4] << SYMBOL_BITS) | SYMBOLS[value & 0xf];
+
+    } // encodeByte ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The symbol for each half byte. */
+    private static final int[] SYMBOLS     = {
+	0x1e, 0x09, 0x14, 0x15, 0x0a, 0x0b, 0x0e, 0x0f,
+	0x12, 0x13, 0x16, 0x17, 0x1a, 0x1b, 0x1c, 0x1d
+    };
+
+    /** The idle symbol, <code>11111</code>. */
+    private static final int   IDLE_SYMBOL = 0x1f;
+
+    /** The width of a symbol, in bits. */
+    private static final int   SYMBOL_BITS = 5;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class FourBFiveBLineCoding
+// =============================================================================
@@ -0,0 +1,115 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A pool of reusable buffers into which frames are built.  A data link layer
+ * takes a buffer for each frame it builds and gives it back once the frame
+ * can no longer be sent again, so in the steady state, frames are built
+ * into the same few buffers over and over, and nothing is allocated.
+ *
+ * A pool is for use by one thread only.
+ *
+ * @file   FramePool.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class FramePool {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** Create an empty pool. */
+    public FramePool () {
+
+	free = new ArrayDeque<ByteBuffer>();
+
+    } // FramePool ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Take a buffer from the pool, or a new one if the pool has none large
+     * enough.
+     *
+     * @param  capacity The least number of bytes the buffer must hold.
+     * @return an empty buffer, ready to be written.
+     */
+    public ByteBuffer acquire (int capacity) {
+
+	ByteBuffer buffer = free.poll();
+	if (buffer == null || buffer.capacity() < capacity) {
+	    allocated += 1;
+	    buffer     = ByteBuffer.allocate(Math.max(capacity,
+							   (buffer == null
+							    ? 0
+							    : buffer.capacity())));
+	}
+	buffer.clear();
+
+	return buffer;
+
+    } // acquire ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Give a buffer back to the pool.  It must not be used again by the
+     * caller.
+     *
+     * @param buffer The buffer, which may be <code>null</code>.
+     */
+    public void release (ByteBuffer buffer) {
+
+	if (buffer != null) {
+	    free.push(buffer);
+	}
+
+    } // release ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of buffers the pool has ever had to allocate. */
+    public int getAllocated () {
+
+	return allocated;
+
+    } // getAllocated ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The buffers not in use, the most recently released first. */
+    private ArrayDeque<ByteBuffer> free;
+
+    /** The number of buffers ever allocated. */
+    private int                    allocated;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class FramePool
+// =============================================================================
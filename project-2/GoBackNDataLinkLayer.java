@@ -0,0 +1,683 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+// =============================================================================
+
+
+// =============================================================================
+/**
+* @file   GoBackNDataLinkLayer.java
+* @author Kyler Kopacz (kkopacz21@amherst.edu)
+* @date   October 2018
+*
+* A data link layer that frames and checks data just as the CRC layer does,
+* but keeps a window of frames in flight instead of waiting for each to be
+* acknowledged before sending the next.  Frames are numbered modulo 256, and
+* the receiver accepts them only in order, answering each frame with a
+* cumulative acknowledgment: the number of the next frame it expects.  When
+* the oldest frame in the window goes unacknowledged for a timeout interval,
+* it and every frame after it are sent again (Go-Back-N).  So that a lost
+* frame need not always wait out the timer, a receiver that gets an intact
+* frame out of order rejects it with a NAK of the frame it expects, and the
+* sender goes back at once.  Until that frame arrives, the NAK is sent again
+* every NAK interval, in case it, or the frame sent again, was lost too.
+*
+* When data flows both ways, acknowledgments ride on data frames: every
+* data frame to a station from which frames have been received, a frame
+* sent again included, carries the latest cumulative acknowledgment just
+* after the header, whether or not one is owed, so that a lost one is made
+* up for by the next.  A separate acknowledgment is sent only if no data
+* frame has carried it within a short delay, by default the time to send
+* two of the largest frames.
+*/
+public class GoBackNDataLinkLayer extends CRCDataLinkLayer {
+  // =============================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Connect this layer to the physical layer below it, and size its window
+  * as given by the system property <code>dataLinkLayer.window</code>.
+  *
+  * @param physicalLayer The physical layer by which to communicate.
+  */
+  protected void connect (PhysicalLayer physicalLayer) {
+
+    super.connect(physicalLayer);
+    setWindowSize(Integer.getInteger("dataLinkLayer.window",
+    DEFAULT_WINDOW_SIZE));
+    setAckDelay(Long.getLong("dataLinkLayer.ackDelay", -1));
+    setAckEvery(Integer.getInteger("dataLinkLayer.ackEvery",
+    windowSize / 2));
+    setNakInterval(Long.getLong("dataLinkLayer.nakInterval",
+    Scheduler.millis(DEFAULT_NAK_INTERVAL)));
+
+  } // connect ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set the most frames that may be in flight, sent but not yet
+  * acknowledged, at once.
+  *
+  * @param  windowSize The number of frames.
+  * @throws RuntimeException if the size is not positive, or is too large
+  *                          for frame numbers to tell old frames from new.
+  */
+  public void setWindowSize (int windowSize) {
+
+    if (windowSize <= 0 || windowSize > MAX_WINDOW_SIZE) {
+      throw new RuntimeException("Invalid window size " + windowSize);
+    }
+    this.windowSize = windowSize;
+
+  } // setWindowSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the most frames that may be in flight at once. */
+  public int getWindowSize () {
+
+    return windowSize;
+
+  } // getWindowSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set how long an acknowledgment waits for a data frame to carry it before
+  * it is sent on its own.  Even with no delay, it waits until this layer
+  * has finished with the frame that it acknowledges, and so rides on any
+  * data frame sent in response.  A delay much longer than a frame time
+  * stalls two stations whose windows are both full, since neither can send
+  * a data frame until the other's acknowledgment arrives.
+  *
+  * @param  ackDelay The delay, in nanoseconds of simulated time, or -1 for
+  *                  the time to send <code>ACK_DELAY_FRAMES</code> of the
+  *                  largest frames, whatever the frame size.
+  * @throws RuntimeException if the delay is neither -1 nor non-negative.
+  */
+  public void setAckDelay (long ackDelay) {
+
+    if (ackDelay < -1) {
+      throw new RuntimeException("Invalid acknowledgment delay " + ackDelay);
+    }
+    this.ackDelay = ackDelay;
+
+  } // setAckDelay ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return how long an acknowledgment waits for a data frame to carry it, in
+  *         nanoseconds of simulated time.
+  */
+  public long getAckDelay () {
+
+    if (ackDelay >= 0) {
+      return ackDelay;
+    }
+    return physicalLayer.transmissionTime((long) ACK_DELAY_FRAMES *
+    getMaxFrameLength() * BITS_PER_BYTE);
+
+  } // getAckDelay ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set how many frames may be received in order before an acknowledgment
+  * of them all is sent, without waiting out the acknowledgment delay,
+  * unless this layer has data waiting that will carry it.  Until then, one
+  * cumulative acknowledgment covers every frame received.  Unless another
+  * number is given, it is half the window, so that a sender whose window
+  * is the same size never waits out the delay with its window full.
+  *
+  * @param  ackEvery The number of frames, or 0 to wait out the delay
+  *                  however many frames arrive.
+  * @throws RuntimeException if the number is negative.
+  */
+  public void setAckEvery (int ackEvery) {
+
+    if (ackEvery < 0) {
+      throw new RuntimeException("Invalid acknowledgment interval " +
+      ackEvery);
+    }
+    this.ackEvery = ackEvery;
+
+  } // setAckEvery ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set how often a receiver that has rejected a frame out of order sends
+  * the NAK again, while the frame it expects has yet to arrive.  It should
+  * be well under the sender's timeout, but over the time for the sender to
+  * go back and the frame expected to arrive.
+  *
+  * @param  nakInterval The interval, in nanoseconds of simulated time.
+  * @throws RuntimeException if the interval is not positive.
+  */
+  public void setNakInterval (long nakInterval) {
+
+    if (nakInterval <= 0) {
+      throw new RuntimeException("Invalid NAK interval " + nakInterval);
+    }
+    this.nakInterval = nakInterval;
+
+  } // setNakInterval ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the number of acknowledgments that rode on data frames. */
+  public long getPiggybackedAcks () {
+
+    return piggybackedAcks;
+
+  } // getPiggybackedAcks ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the most bytes a frame can occupy: those of the CRC layer's
+  *         frames, and an acknowledgment, which might be escaped.
+  */
+  protected int getMaxFrameLength () {
+
+    return super.getMaxFrameLength() + 2;
+
+  } // getMaxFrameLength ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Send a sequence of bytes through the physical layer.  As many frames are
+  * sent at once as the window allows; each acknowledgment that arrives then
+  * makes room for more, until the buffer is empty.
+  *
+  * @param data The sequence of bytes to send.
+  */
+  public void send (byte[] data) {
+
+    bufferForSending(data);
+    fillWindow();
+
+  } // send ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return whether every buffered byte has been sent and acknowledged.
+  */
+  public boolean isIdle () {
+
+    return super.isIdle() && unacknowledged.isEmpty();
+
+  } // isIdle ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Embed a raw sequence of bytes into a frame numbered as the next frame to
+  * be sent.
+  *
+  * @param  data The raw sequence of bytes to be framed, which is consumed.
+  * @return A complete frame, in a pooled buffer.
+  */
+  public ByteBuffer createFrame (ByteBuffer data) {
+
+    return createFrame(data, nextToSend);
+
+  } // createFrame ()
+  // =========================================================================
+  /**
+  * Embed a raw sequence of bytes into a frame with the given number.  If the
+  * station to which it is going has sent frames to this one, the frame
+  * carries an acknowledgment of all those received in order so far, which
+  * settles any acknowledgment owed.
+  *
+  * @param  data        The raw sequence of bytes to be framed, which is
+  *                     consumed.
+  * @param  frameNumber The number of the frame.
+  * @return A complete frame, in a pooled buffer.
+  */
+  protected ByteBuffer createFrame (ByteBuffer data, byte frameNumber) {
+
+    if (!carriesAck()) {
+      return super.createFrame(data, frameNumber);
+    }
+
+    ackPending = false;
+    ackOwed    = 0;
+    if (ackTimer != null) {
+      ackTimer.cancel();
+      ackTimer = null;
+    }
+    piggybackedAcks += 1;
+    return createFrame(data, PIGGYBACKED, frameNumber, nextExpected & 0xff);
+
+  } // createFrame ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return whether data frames now being sent carry an acknowledgment: they
+  *         do once frames have been received in order from the station to
+  *         which they are going.
+  */
+  private boolean carriesAck () {
+
+    return receivedInOrder && destination == ackDestination;
+
+  } // carriesAck ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Frame the next frame-worth of data and transmit it, keeping the frame in
+  * the window until it is acknowledged.
+  */
+  protected void sendNextFrame () {
+
+    // Keep a view of the data framed, so that the frame can be built afresh
+    // to carry a later acknowledgment if it must be sent again.
+    ByteBuffer buffered = sendBuffer.peek();
+    int        start    = buffered.position();
+    ByteBuffer frame    = createNextFrame();
+    ByteBuffer data     = buffered.duplicate();
+    data.limit(buffered.position());
+    data.position(start);
+
+    unacknowledged.add(frame);
+    unacknowledgedData.add(data);
+    nextToSend = (byte)(nextToSend + 1);
+    transmit(frame);
+
+    // Time the oldest frame in flight, if it is not already being timed.
+    if (retransmitTimer == null) {
+      startTimer();
+    }
+
+  } // sendNextFrame ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** Send frames until the window is full or nothing is left to send. */
+  private void fillWindow () {
+
+    while (unacknowledged.size() < windowSize && !sendBuffer.isEmpty()) {
+      sendNextFrame();
+    }
+
+  } // fillWindow ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An entire frame has been received.  A data frame is delivered only if it
+  * is intact and is the next one expected, and every data frame is answered
+  * with an acknowledgment of all those received in order so far, or with a
+  * rejection if it shows that the one expected was lost.  A response slides
+  * the window forward.  Anything damaged is dropped, to be sent again when
+  * its sender goes back.
+  *
+  * @param data The de-tagged contents extracted from the frame.
+  */
+  protected void finishFrameReceive (ByteRing data) {
+
+    int length = data.size();
+    if (length < headerSize) {
+      return;
+    }
+    byte[] contents = receivedFrame;
+    data.peek(contents, 0, length);
+
+    byte type        = contents[0];
+    byte frameNumber = contents[1];
+    byte frameDest   = contents[2];
+    byte frameSource = contents[3];
+
+    // Frames for other stations, and damaged frames, are dropped.
+    if (frameDest != address && frameDest != BROADCAST) {
+      return;
+    }
+    if (!isFrameIntact()) {
+      return;
+    }
+
+    if (type == ACK || type == NAK) {
+      if (length == headerSize) {
+        receiveAcknowledgment(frameNumber, type == NAK);
+      }
+      return;
+    }
+    // A data frame may carry an acknowledgment ahead of its data.
+    int start = headerSize;
+    if (type == PIGGYBACKED) {
+      if (length == headerSize) {
+        return;
+      }
+      start += 1;
+    } else if (type != 0) {
+      return;
+    }
+
+    // Deliver the frame only if it is the next in order, and acknowledge it.
+    // A later frame, within a window of the one expected, means that that
+    // one was lost, so reject it, once, to have the sender go back; the NAK
+    // timer asks again until it arrives.  After that, or for an old frame
+    // sent again, acknowledge what has been received so far.
+    if (frameNumber == nextExpected) {
+      client.receive(contents, start, length - start);
+      nextExpected = (byte)(nextExpected + 1);
+      rejected     = false;
+      acknowledge(frameSource);
+    } else if (!rejected && ((frameNumber - nextExpected) & 0xff) <
+    windowSize) {
+      rejected       = true;
+      nakDestination = frameSource;
+      ackPending     = false;
+      ackOwed        = 0;
+      sendNAKFrame(nextExpected, frameSource);
+      if (nakTimer == null) {
+        nakTimer = setTimer(nakInterval, nakTimeOut);
+      }
+    } else {
+      acknowledge(frameSource);
+    }
+
+    // Take the acknowledgment carried, if any, last, so that any frames it
+    // lets this layer send carry the acknowledgment just owed in turn.
+    if (type == PIGGYBACKED) {
+      receiveAcknowledgment(contents[headerSize], false);
+    }
+
+  } // finishFrameReceive ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Owe a station an acknowledgment of every frame received in order so far,
+  * to ride on the next data frame to it, or else to be sent on its own once
+  * the acknowledgment delay has passed, or once enough frames are owed one
+  * and no data is waiting to carry it.
+  *
+  * @param source The station that sent the frames.
+  */
+  private void acknowledge (byte source) {
+
+    if (ackPending && source != ackDestination) {
+      sendACKFrame(nextExpected, ackDestination);
+      ackOwed = 0;
+    }
+    ackPending      = true;
+    ackDestination  = source;
+    receivedInOrder = true;
+    ackOwed        += 1;
+    if (ackEvery > 0 && ackOwed >= ackEvery && sendBuffer.isEmpty()) {
+      ackPending = false;
+      ackOwed    = 0;
+      sendACKFrame(nextExpected, ackDestination);
+    } else if (ackTimer == null) {
+      ackTimer = setTimer(getAckDelay(), ackTimeOut);
+    }
+
+  } // acknowledge ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * No data frame carried the acknowledgment owed in time, so send it on its
+  * own.
+  */
+  private void sendDelayedAck () {
+
+    ackTimer = null;
+    if (ackPending) {
+      ackPending = false;
+      ackOwed    = 0;
+      sendACKFrame(nextExpected, ackDestination);
+    }
+
+  } // sendDelayedAck ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * The NAK interval has passed since the frame expected was rejected.  If
+  * it still has not arrived, the NAK or the frame sent again was lost, so
+  * ask for it again, and keep doing so until it arrives.
+  */
+  private void resendNAK () {
+
+    nakTimer = null;
+    if (rejected) {
+      sendNAKFrame(nextExpected, nakDestination);
+      nakTimer = setTimer(nakInterval, nakTimeOut);
+    }
+
+  } // resendNAK ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A response has arrived: every frame numbered before the given one has
+  * been received.  Release those frames from the window, and send more.  A
+  * rejection also says that the given frame was lost, so go back to it at
+  * once.  A response about frames never sent is ignored.
+  *
+  * @param next     The number of the next frame the receiver expects.
+  * @param rejected Whether the receiver got a frame after that one.
+  */
+  private void receiveAcknowledgment (byte next, boolean rejected) {
+
+    int acknowledged = (next - oldestUnacknowledged) & 0xff;
+    if (acknowledged > unacknowledged.size()) {
+      return;
+    }
+    if (acknowledged == 0) {
+      if (rejected && !unacknowledged.isEmpty()) {
+        retransmitTimer.cancel();
+        goBack();
+      }
+      return;
+    }
+
+    for (int i = 0; i < acknowledged; i += 1) {
+      ByteBuffer frame = unacknowledged.remove();
+      unacknowledgedData.remove();
+      recordExchange(frame.remaining() + 2 + headerSize, true);
+      framePool.release(frame);
+    }
+    oldestUnacknowledged = next;
+
+    // Go back to the new oldest frame if it was rejected, or else time it,
+    // if there is one, afresh.
+    retransmitTimer.cancel();
+    retransmitTimer = null;
+    if (rejected && !unacknowledged.isEmpty()) {
+      goBack();
+    } else if (!unacknowledged.isEmpty()) {
+      startTimer();
+    }
+
+    fillWindow();
+
+  } // receiveAcknowledgment ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** Start the timer that goes back to the oldest frame in flight. */
+  private void startTimer () {
+
+    retransmitTimer = setTimer(Scheduler.millis(TIMEOUT_INTERVAL), timeOut);
+
+  } // startTimer ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * The oldest frame in flight was rejected, or has gone unacknowledged for
+  * too long, so count the exchange as failed, and send it and every frame
+  * after it again.  Each frame sent again is first built afresh if it can
+  * carry the latest acknowledgment.
+  */
+  private void goBack () {
+
+    recordExchange(unacknowledged.peek().remaining(), false);
+    byte frameNumber = oldestUnacknowledged;
+    for (int i = unacknowledged.size(); i > 0; i -= 1) {
+      ByteBuffer frame = unacknowledged.remove();
+      ByteBuffer data  = unacknowledgedData.remove();
+      if (carriesAck()) {
+        framePool.release(frame);
+        frame = createFrame(data.duplicate(), frameNumber);
+      }
+      transmit(frame);
+      unacknowledged.add(frame);
+      unacknowledgedData.add(data);
+      frameNumber = (byte)(frameNumber + 1);
+    }
+    startTimer();
+
+  } // goBack ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  // DATA MEMBERS
+
+  /** The most frames in flight at once. */
+  private int                    windowSize;
+
+  /** The frames in flight, oldest first, and views of the data of each. */
+  private ArrayDeque<ByteBuffer> unacknowledged     =
+  new ArrayDeque<ByteBuffer>();
+  private ArrayDeque<ByteBuffer> unacknowledgedData =
+  new ArrayDeque<ByteBuffer>();
+
+  /** The number of the oldest frame in flight, and of the next to send. */
+  private byte                   oldestUnacknowledged;
+  private byte                   nextToSend;
+
+  /** The number of the next frame to deliver. */
+  private byte                   nextExpected;
+
+  /**
+  * Whether the next frame to deliver has been asked for with a NAK, and
+  * from which station.
+  */
+  private boolean                rejected;
+  private byte                   nakDestination;
+
+  /**
+  * How often the frame is asked for again until it arrives, in nanoseconds,
+  * the timer that does so, and what it does.
+  */
+  private long                   nakInterval;
+  private Scheduler.Event        nakTimer;
+  private final Runnable         nakTimeOut = () -> resendNAK();
+
+  /**
+  * Whether an acknowledgment is owed, and to which station, and the timer
+  * that sends it on its own if nothing carries it first.  Once any frame has
+  * been received in order, data frames to that station carry one.
+  */
+  private boolean                receivedInOrder;
+  private boolean                ackPending;
+  private byte                   ackDestination;
+  private Scheduler.Event        ackTimer;
+  private final Runnable         ackTimeOut = () -> sendDelayedAck();
+
+  /**
+  * How long an acknowledgment waits for a data frame, in nanoseconds, or -1
+  * for <code>ACK_DELAY_FRAMES</code> frame times.
+  */
+  private long                   ackDelay;
+
+  /**
+  * How many frames an acknowledgment may be owed for before it is sent
+  * anyway, if any limit, and how many it is owed for now.
+  */
+  private int                    ackEvery;
+  private int                    ackOwed;
+
+  /** The number of acknowledgments that rode on data frames. */
+  private long                   piggybackedAcks;
+
+  /** The timer on the oldest frame in flight, if any, and what it does. */
+  private Scheduler.Event        retransmitTimer;
+  private final Runnable         timeOut = () -> goBack();
+
+  /** The type of a data frame that carries an acknowledgment. */
+  protected static final byte    PIGGYBACKED = (byte) 0b00100000;
+
+  /**
+  * The number of the largest frames that could be sent in the time that an
+  * acknowledgment waits for a data frame, unless another delay is given.
+  */
+  public static final int        ACK_DELAY_FRAMES    = 2;
+
+  /** The window size used unless another is given. */
+  public static final int        DEFAULT_WINDOW_SIZE = 8;
+
+  /** The NAK interval used unless another is given, in milliseconds. */
+  public static final long       DEFAULT_NAK_INTERVAL = 5;
+
+  /**
+  * The largest window: one less than the number of frame numbers, so that a
+  * new frame is never mistaken for one in flight.
+  */
+  public static final int        MAX_WINDOW_SIZE     = 255;
+  // =========================================================================
+
+
+
+  // =============================================================================
+} // class GoBackNDataLinkLayer
+// =============================================================================
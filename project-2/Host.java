@@ -1,12 +1,3 @@
-// =============================================================================
-// IMPORTS
-
-import java.util.Queue;
-import java.util.LinkedList;
-// =============================================================================
-
-
-
 // =============================================================================
 /**
 * A single host, comprising a single network stack, connected to a medium.
@@ -27,21 +18,76 @@ public class Host {
 
 
   // =========================================================================
+  /**
+  * Create a host with the next unused address.
+  *
+  * @param medium            The medium to which to connect.
+  * @param dataLinkLayerType The kind of data link layer to use.
+  */
   public Host (Medium medium, String dataLinkLayerType) {
 
+    this(medium, dataLinkLayerType, nextAddress());
+
+  } // Host ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Create a host with the given address.
+  *
+  * @param  medium            The medium to which to connect.
+  * @param  dataLinkLayerType The kind of data link layer to use.
+  * @param  address           The host's address, which must not be the
+  *                           broadcast address.
+  * @throws RuntimeException if the address is the broadcast address.
+  */
+  public Host (Medium medium, String dataLinkLayerType, byte address) {
+
+    if (address == DataLinkLayer.BROADCAST) {
+      throw new RuntimeException("A host cannot have the broadcast address");
+    }
+    this.address       = address;
     this.medium        = medium;
     this.physicalLayer = PhysicalLayer.create(medium);
     this.dataLinkLayer = DataLinkLayer.create(dataLinkLayerType,
     this.physicalLayer,
     this);
 
-    this.buffer = new LinkedList<Byte>();
+    this.buffer = new ByteRing();
 
   } // Host ()
   // =========================================================================
 
 
 
+  // =========================================================================
+  /** @return this host's address. */
+  public byte getAddress () {
+
+    return address;
+
+  } // getAddress ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Send everything from now on to the host with the given address.
+  *
+  * @param destination The address of the host to send to.
+  */
+  public void setDestination (byte destination) {
+
+    dataLinkLayer.setDestination(destination);
+
+  } // setDestination ()
+  // =========================================================================
+
+
+
   // =========================================================================
   /**
   * Send a sequence of bytes.
@@ -57,6 +103,55 @@ public class Host {
 
 
 
+  // =========================================================================
+  /** @return the data link layer through which this host communicates. */
+  public DataLinkLayer getDataLinkLayer () {
+
+    return dataLinkLayer;
+
+  } // getDataLinkLayer ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the physical layer through which this host communicates. */
+  public PhysicalLayer getPhysicalLayer () {
+
+    return physicalLayer;
+
+  } // getPhysicalLayer ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return the scheduler whose events drive this host's network stack.
+  */
+  public Scheduler getScheduler () {
+
+    return physicalLayer.getScheduler();
+
+  } // getScheduler ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return whether everything handed to <code>send()</code> has been sent
+  *         and acknowledged.
+  */
+  public boolean isIdle () {
+
+    return dataLinkLayer.isIdle();
+
+  } // isIdle ()
+  // =========================================================================
+
+
+
   // =========================================================================
   /**
   * Receive bytes from the lower layer.  Buffer those until they are
@@ -66,16 +161,48 @@ public class Host {
   */
   public void receive (byte[] data) {
 
+    receive(data, 0, data.length);
+
+  } // receive ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Receive a run of bytes from the lower layer.  Buffer those until they are
+  * retrieved.
+  *
+  * @param data   The buffer holding the bytes received.  It belongs to the
+  *               caller, and is not retained.
+  * @param offset The index of the first byte received.
+  * @param length The number of bytes received.
+  */
+  public void receive (byte[] data, int offset, int length) {
+
     // Add the bytes into the buffer.
-    for (int i = 0; i < data.length; i += 1) {
-      buffer.add(data[i]);
-    }
+    buffer.put(data, offset, length);
+    lastReceiveTime = physicalLayer.getScheduler().now();
 
   } // receive ()
   // =========================================================================
 
 
 
+  // =========================================================================
+  /**
+  * @return the simulated time at which bytes were last received, or 0 if
+  *         none have been.
+  */
+  public long getLastReceiveTime () {
+
+    return lastReceiveTime;
+
+  } // getLastReceiveTime ()
+  // =========================================================================
+
+
+
   // =========================================================================
   /**
   * Retrieve and return any bytes that have been received and buffered.
@@ -84,12 +211,10 @@ public class Host {
   */
   public byte[] retrieve () {
 
-    // Remove the bytes from the buffer, adding them to a newly formed array
-    // to be returned.
+    // Remove the bytes from the buffer, into a newly formed array to be
+    // returned.
     byte[] received = new byte[buffer.size()];
-    for (int i = 0; i < received.length; i += 1) {
-      received[i] = buffer.remove();
-    }
+    buffer.get(received, 0, received.length);
 
     return received;
 
@@ -98,9 +223,31 @@ public class Host {
 
 
 
+  // =========================================================================
+  /** @return the next address not yet given to a host. */
+  private static synchronized byte nextAddress () {
+
+    if (addressesUsed == (DataLinkLayer.BROADCAST & 0xff)) {
+      throw new RuntimeException("Out of host addresses");
+    }
+    byte address  = (byte)addressesUsed;
+    addressesUsed += 1;
+    return address;
+
+  } // nextAddress ()
+  // =========================================================================
+
+
+
   // =========================================================================
   // DATA MEMBERS
 
+  /** This host's address. */
+  private byte          address;
+
+  /** How many addresses have been given out automatically. */
+  private static int    addressesUsed = 0;
+
   /** The medium to which this host is connect. */
   private Medium        medium;
 
@@ -111,7 +258,10 @@ public class Host {
   private DataLinkLayer dataLinkLayer;
 
   /** The buffered bytes received via the network stack. */
-  private Queue<Byte>   buffer;
+  private ByteRing      buffer;
+
+  /** When bytes were last received, in nanoseconds of simulated time. */
+  private long          lastReceiveTime;
 
   /** Whether to emit debugging information. */
   private static final boolean debug = false;
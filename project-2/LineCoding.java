@@ -0,0 +1,405 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.HashMap;
+import java.util.Map;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A line code, which the physical layer applies to the bits it sends and
+ * undoes on the bits it receives.  Each data byte becomes a fixed-width
+ * codeword.  Codes are table driven.  A 256-entry table gives each byte's
+ * codeword, and a table over every possible codeword gives its byte, so
+ * encoding and decoding cost one lookup per byte rather than work per bit.
+ *
+ * A received codeword that the code never sends is a code violation: proof
+ * of an error on the medium.  It is counted and decoded to the byte whose
+ * codeword is nearest, in Hamming distance.  Several violations in a row
+ * suggest instead that bits were lost or gained, so the receiver then
+ * shifts its view of where codewords begin by a bit, until it finds them.
+ *
+ * Codes whose codewords are not a whole number of bytes wide send an idle
+ * codeword after each run, as often as it takes to fill out the last byte.
+ * The receiver then discards the idle codewords, so the run keeps its
+ * alignment without the medium having to carry a partial byte.
+ *
+ * A code is named by the prefix of its class name, as in
+ * <code>-DphysicalLayer.lineCoding=Manchester</code>.  Each code's tables
+ * are built once and shared by every physical layer that uses it.  The
+ * per-layer state of a receiver lives in a <code>Decoder</code>.
+ *
+ * @file   LineCoding.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public abstract class LineCoding {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find the line code of the given name, building its tables the first
+     * time it is asked for.
+     *
+     * @param  type The name of the code, being the prefix of its class name.
+     * @return the code.
+     * @throws RuntimeException if there is no such code.
+     */
+    public static synchronized LineCoding create (String type) {
+
+	LineCoding coding = codings.get(type);
+	if (coding != null) {
+	    return coding;
+	}
+
+	String className = type + "LineCoding";
+	try {
+	    coding = (LineCoding)Class.forName(className)
+		.getDeclaredConstructor()
+		.newInstance();
+	} catch (ClassNotFoundException e) {
+	    throw new RuntimeException("Unknown line coding " + className);
+	} catch (ReflectiveOperationException e) {
+	    throw new RuntimeException("Could not instantiate " + className);
+	} catch (ClassCastException e) {
+	    throw new RuntimeException(className +
+				       " is not a subclass of LineCoding");
+	}
+	codings.put(type, coding);
+
+	return coding;
+
+    } // create ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the width of a codeword, in bits. */
+    public int getCodeBits () {
+
+	return codeBits;
+
+    } // getCodeBits ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  length A number of data bytes.
+     * @return the number of whole bytes that those data bytes are encoded to.
+     */
+    public int encodedLength (int length) {
+
+	long bits = (long)length * codeBits;
+	while (bits % BITS_PER_BYTE != 0) {
+	    bits += codeBits;
+	}
+
+	return (int)(bits / BITS_PER_BYTE);
+
+    } // encodedLength ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Encode a run of bytes, filling out the last byte with idle codewords.
+     *
+     * @param  data    The buffer holding the bytes to encode.
+     * @param  offset  The index of the first byte to encode.
+     * @param  length  The number of bytes to encode.
+     * @param  encoded The buffer to receive the code, of at least
+     *                 <code>encodedLength(length)</code> bytes.
+     * @return the number of bytes of code written.
+     */
+    public int encode (byte[] data, int offset, int length, byte[] encoded) {
+
+	long bits  = 0;
+	int  held  = 0;
+	int  count = 0;
+	for (int i = offset; i < offset + length; i += 1) {
+	    bits  = (bits << codeBits) | encodeTable[data[i] & 0xff];
+	    held += codeBits;
+	    while (held >= BITS_PER_BYTE) {
+		held            -= BITS_PER_BYTE;
+		encoded[count++] = (byte)(bits >>> held);
+	    }
+	}
+	while (held != 0) {
+	    bits  = (bits << codeBits) | idleCode;
+	    held += codeBits;
+	    while (held >= BITS_PER_BYTE) {
+		held            -= BITS_PER_BYTE;
+		encoded[count++] = (byte)(bits >>> held);
+	    }
+	}
+
+	return count;
+
+    } // encode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PROTECTED METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Build the tables of a code.
+     *
+     * @param  codeBits The width of a codeword, in bits, at most 16.
+     * @param  idleCode The codeword sent to fill out a run, or -1 if codewords
+     *                  are a whole number of bytes wide and there is none.
+     * @throws RuntimeException if a code that needs an idle codeword lacks
+     *                          one.
+     */
+    protected LineCoding (int codeBits, int idleCode) {
+
+	if (codeBits < BITS_PER_BYTE || codeBits > MAX_CODE_BITS) {
+	    throw new RuntimeException("Invalid codeword width " + codeBits);
+	}
+	if (codeBits % BITS_PER_BYTE != 0 && idleCode < 0) {
+	    throw new RuntimeException("A " + codeBits + "-bit code needs " +
+				       "an idle codeword");
+	}
+	this.codeBits = codeBits;
+	this.idleCode = idleCode;
+
+	encodeTable = new int[1 << BITS_PER_BYTE];
+	for (int value = 0; value < encodeTable.length; value += 1) {
+	    encodeTable[value] = encodeByte(value);
+	}
+
+	// Every codeword decodes to the byte whose codeword is nearest, and
+	// is marked a violation unless it is that byte's own.
+	decodeTable = new int[1 << codeBits];
+	for (int code = 0; code < decodeTable.length; code += 1) {
+	    int nearest  = 0;
+	    int distance = Integer.MAX_VALUE;
+	    for (int value = 0; value < encodeTable.length; value += 1) {
+		int d = Integer.bitCount(code ^ encodeTable[value]);
+		if (d < distance) {
+		    nearest  = value;
+		    distance = d;
+		}
+	    }
+	    decodeTable[code] = nearest | (distance == 0 ? 0 : VIOLATION);
+	}
+	if (idleCode >= 0) {
+	    decodeTable[idleCode] = IDLE;
+	}
+
+    } // LineCoding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  value A data byte, from 0 to 255.
+     * @return its codeword, in the low <code>codeBits</code> bits, sent most
+     *         significant first.
+     */
+    protected abstract int encodeByte (int value);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * One receiver's decoding of a code.  Codewords may straddle arrivals,
+     * so the bits of an unfinished codeword are held until the rest arrive.
+     */
+    public static class Decoder {
+
+	// =====================================================================
+	/**
+	 * @param coding The code to decode.
+	 */
+	public Decoder (LineCoding coding) {
+
+	    this.coding = coding;
+
+	} // Decoder ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * Decode a run of received bits, dropping idle codewords.
+	 *
+	 * @param  data    The bits received, packed most significant first.
+	 * @param  bits    The number of bits received.
+	 * @param  decoded The buffer to receive the data bytes, of at least
+	 *                 <code>maxDecodedLength(bits)</code> bytes.
+	 * @return the number of data bytes written.
+	 */
+	public int decode (byte[] data, int bits, byte[] decoded) {
+
+	    int   codeBits = coding.codeBits;
+	    int   mask     = (1 << codeBits) - 1;
+	    int[] table    = coding.decodeTable;
+	    int   count    = 0;
+	    int   i        = 0;
+	    while (i < bits) {
+
+		// Take a whole byte where one is left, or else a lone bit.
+		if ((i & 7) == 0 && bits - i >= BITS_PER_BYTE) {
+		    held      = (held << BITS_PER_BYTE) | (data[i >>> 3] & 0xff);
+		    heldBits += BITS_PER_BYTE;
+		    i        += BITS_PER_BYTE;
+		} else {
+		    held      = ((held << 1) |
+				 ((data[i >>> 3] >>> (7 - (i & 7))) & 1));
+		    heldBits += 1;
+		    i        += 1;
+		}
+
+		if (heldBits >= codeBits) {
+		    heldBits -= codeBits;
+		    int value = table[(int)(held >>> heldBits) & mask];
+		    if (value == IDLE) {
+			violationRun = 0;
+			continue;
+		    }
+		    if ((value & VIOLATION) == 0) {
+			violationRun = 0;
+		    } else {
+			violations   += 1;
+			violationRun += 1;
+			if (violationRun == REALIGN_AFTER) {
+			    // Bits were lost or gained: read the last bit again,
+			    // trying the next alignment.
+			    heldBits     += 1;
+			    violationRun  = 0;
+			}
+		    }
+		    decoded[count++] = (byte)value;
+		}
+
+	    }
+
+	    return count;
+
+	} // decode ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * @param  bits A number of bits about to be decoded.
+	 * @return the most data bytes that decoding them could yield.
+	 */
+	public int maxDecodedLength (int bits) {
+
+	    // Realigning reads a bit again at most once every few codewords.
+	    return (heldBits + bits) / (coding.codeBits - 1) + 1;
+
+	} // maxDecodedLength ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the number of code violations seen. */
+	public long getViolations () {
+
+	    return violations;
+
+	} // getViolations ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The code being decoded. */
+	private final LineCoding coding;
+
+	/** Received bits not yet decoded, in the low <code>heldBits</code>. */
+	private long             held;
+
+	/** The number of bits held. */
+	private int              heldBits;
+
+	/** The number of code violations seen. */
+	private long             violations;
+
+	/** The number of codewords in a row that have been violations. */
+	private int              violationRun;
+	// =====================================================================
+
+    } // class Decoder
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The width of a codeword, in bits. */
+    private final int   codeBits;
+
+    /** The codeword that fills out a run, or -1 if none is needed. */
+    private final int   idleCode;
+
+    /** The codeword of each byte. */
+    private final int[] encodeTable;
+
+    /** The byte of each codeword, flagged if a violation, or idle. */
+    private final int[] decodeTable;
+
+    /** The codes built so far, by name. */
+    private static final Map<String, LineCoding> codings =
+	new HashMap<String, LineCoding>();
+
+    /** The widest codeword allowed, keeping the decode table in bounds. */
+    public static final int     MAX_CODE_BITS = 16;
+
+    /**
+     * The number of violations in a row taken to mean that the receiver has
+     * lost its alignment to the codewords, rather than that noise struck.
+     */
+    public static final int     REALIGN_AFTER = 3;
+
+    /** The flag marking a decoded codeword as a violation. */
+    private static final int    VIOLATION     = 0x100;
+
+    /** The decoding of the idle codeword. */
+    private static final int    IDLE          = -1;
+
+    /** The number of bits in a byte. */
+    private static final int    BITS_PER_BYTE = 8;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class LineCoding
+// =============================================================================
@@ -1,7 +1,7 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Iterator;
+import java.util.Arrays;
 // =============================================================================
 
 
@@ -25,10 +25,62 @@ public class LowNoiseMedium extends Medium {
 
 
 
+    // =========================================================================
+    /**
+     * Create a medium configured by the system properties
+     * <code>medium.errorProbability</code> (defaulting to 0.001) and
+     * <code>medium.seed</code>.  Without a seed, errors are not reproducible.
+     */
+    public LowNoiseMedium () {
+
+	double errorProbability =
+	    Double.parseDouble(System.getProperty("medium.errorProbability",
+						  "" + DEFAULT_ERROR_PROBABILITY));
+	Long   seed             = Long.getLong("medium.seed");
+	noise = (seed == null
+		 ? new NoiseEngine(errorProbability)
+		 : new NoiseEngine(errorProbability, seed));
+
+    } // LowNoiseMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium whose errors are reproducible from the given seed.
+     *
+     * @param errorProbability The probability that any one bit is flipped.
+     * @param seed             The seed for the medium's random numbers.
+     */
+    public LowNoiseMedium (double errorProbability, long seed) {
+
+	noise = new NoiseEngine(errorProbability, seed);
+
+    } // LowNoiseMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Change the probability that any one bit is flipped.
+     *
+     * @param errorProbability The new probability, in <code>[0, 1]</code>.
+     */
+    public void setErrorProbability (double errorProbability) {
+
+	noise.setErrorProbability(errorProbability);
+
+    } // setErrorProbability ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Send a bit from one client to the other clients.  With some probability,
-     * flip a bit.
+     * flip the bit, independently for each receiver.
      *
      * @param sender The client physical layer sending the bit.
      * @param bit The value to be sent, where <code>false</code> sends a
@@ -40,25 +92,89 @@ public class LowNoiseMedium extends Medium {
     public void transmit (PhysicalLayer sender, boolean bit) {
 
 	// Only registered clients may send.
-	if (!clients.contains(sender)) {
-	    throw new RuntimeException("Unregistered sender on the medium");
-	}
-	
+	checkSender(sender);
+	capture(sender, bit);
+	long arrival = arrivalTime(sender, 1);
+
 	// Deliver the bit to each client that is not the sender.
-	Iterator<PhysicalLayer> clientIterator = clients.iterator();
-	while (clientIterator.hasNext()) {
-	    
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
 	    // With low probability, flip this bit.
-	    if (Math.random() < errorProbability) {
+	    if (noise.nextBitFlips()) {
 		if (debug) {
 		    System.out.println("LowNoiseMedium.transmit(): Flipped bit!");
 		}
-		bit = !bit;
+		captureDamage(sender, receiver, bit);
+		deliver(receiver, arrival, !bit);
+	    } else {
+		deliver(receiver, arrival, bit);
+	    }
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one client to the other clients.  Each receiver
+     * gets its own copy of the run, in which each bit is flipped with some
+     * probability.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	long bits    = (long)length * BITS_PER_BYTE;
+	long arrival = arrivalTime(sender, bits);
+
+	// Deliver a noisy copy of the bytes to each client that is not the
+	// sender.
+	byte[] cleanData = null;
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
 	    }
 
-	    PhysicalLayer receiver = clientIterator.next();
-	    if (receiver != sender) {
-		receiver.receive(bit);
+	    // Receivers whose copies are unharmed may share one copy; only
+	    // make a copy of its own for a receiver if some bit in it will be
+	    // flipped.
+	    if (noise.bitsUntilError() >= bits) {
+		noise.skip(length);
+		if (cleanData == null) {
+		    cleanData = Arrays.copyOfRange(data, offset, offset + length);
+		}
+		deliver(receiver, arrival, cleanData);
+	    } else {
+		byte[] noisyData = Arrays.copyOfRange(data,
+						      offset,
+						      offset + length);
+		noise.corrupt(noisyData, 0, length);
+		captureDamage(sender,
+			      receiver,
+			      data,
+			      offset,
+			      noisyData,
+			      length);
+		deliver(receiver, arrival, noisyData);
 	    }
 
 	}
@@ -71,8 +187,11 @@ public class LowNoiseMedium extends Medium {
     // =========================================================================
     // DATA MEMBERS
 
-    // The probablity that a bit will flip.
-    private static final double errorProbability = 0.001;
+    /** The default probablity that a bit will flip. */
+    public static final double DEFAULT_ERROR_PROBABILITY = 0.001;
+
+    // The source of this medium's bit errors.
+    private NoiseEngine noise;
     // =========================================================================
 
 
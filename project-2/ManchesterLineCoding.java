@@ -0,0 +1,51 @@
+// =============================================================================
+/**
+ * Manchester coding, as used by 10 Mb/s Ethernet: each bit is sent as a
+ * transition in the middle of its bit time, a <code>0</code> as low then
+ * high (<code>01</code>) and a <code>1</code> as high then low
+ * (<code>10</code>).  The signal thus carries its own clock and never dwells
+ * at one level, at the cost of doubling the bits on the medium.  A pair of
+ * equal halves is a code violation.
+ *
+ * @file   ManchesterLineCoding.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class ManchesterLineCoding extends LineCoding {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** Build the tables. */
+    public ManchesterLineCoding () {
+
+	super(16, -1);
+
+    } // ManchesterLineCoding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  value A data byte.
+     * @return its 16-bit codeword, two bits per data bit.
+     */
+    protected int encodeByte (int value) {
+
+	int code = 0;
+	for (int i = 7; i >= 0; i -= 1) {
+	    code = (code << 2) | (((value >>> i) & 1) != 0 ? 0x2 : 0x1);
+	}
+
+	return code;
+
+    } // encodeByte ()
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ManchesterLineCoding
+// =============================================================================
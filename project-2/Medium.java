@@ -1,9 +1,8 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 // =============================================================================
@@ -68,15 +67,221 @@ public abstract class Medium {
 
 
     // =========================================================================
+    /**
+     * Create a medium with no clients and its own scheduler.  Its bit rate and
+     * propagation delay are taken from the system properties
+     * <code>medium.bitRate</code> (in bits per second) and
+     * <code>medium.propagationDelay</code> (in nanoseconds), if given.
+     */
     public Medium () {
 
-	clients = new LinkedList<PhysicalLayer>();
+	clients           = new PhysicalLayer[0];
+	clientIndex       = new IdentityHashMap<PhysicalLayer, Integer>();
+	transmitterFreeAt = new long[0];
+	scheduler         = new Scheduler();
+	setBitRate(Long.getLong("medium.bitRate", DEFAULT_BIT_RATE));
+	setPropagationDelay(Long.getLong("medium.propagationDelay",
+					 DEFAULT_PROPAGATION_DELAY));
 
     } // Medium ()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /** @return the scheduler that keeps time for this medium. */
+    public Scheduler getScheduler () {
+
+	return scheduler;
+
+    } // getScheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  client A physical layer connected to this medium.
+     * @return the scheduler that keeps time for the given client.  Unless a
+     *         subclass gives each client its own, this is the medium's.
+     */
+    public Scheduler getScheduler (PhysicalLayer client) {
+
+	return scheduler;
+
+    } // getScheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Have this medium keep time with the given scheduler, so that it may
+     * share a clock with other media.  Must be done before any sending.
+     *
+     * @param scheduler The scheduler to use.
+     */
+    public void setScheduler (Scheduler scheduler) {
+
+	this.scheduler = scheduler;
+
+    } // setScheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record all traffic on this medium in the given capture, or stop
+     * recording it.
+     *
+     * @param capture The capture, or <code>null</code> for none.
+     */
+    public void setCapture (WireCapture capture) {
+
+	this.capture = capture;
+
+    } // setCapture ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the capture recording this medium's traffic, if any. */
+    public WireCapture getCapture () {
+
+	return capture;
+
+    } // getCapture ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the rate at which a sender can put bits onto this medium.
+     *
+     * @param  bitRate The rate, in bits per second.
+     * @throws RuntimeException if the rate is not positive.
+     */
+    public void setBitRate (long bitRate) {
+
+	if (bitRate <= 0) {
+	    throw new RuntimeException("Invalid bit rate " + bitRate);
+	}
+	this.bitRate = bitRate;
+
+    } // setBitRate ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the rate at which bits are sent, in bits per second. */
+    public long getBitRate () {
+
+	return bitRate;
+
+    } // getBitRate ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the time a bit takes to travel from its sender to its receivers.
+     *
+     * @param  propagationDelay The delay, in nanoseconds.
+     * @throws RuntimeException if the delay is negative.
+     */
+    public void setPropagationDelay (long propagationDelay) {
+
+	if (propagationDelay < 0) {
+	    throw new RuntimeException("Invalid propagation delay " +
+				       propagationDelay);
+	}
+	this.propagationDelay = propagationDelay;
+
+    } // setPropagationDelay ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the time a bit spends in flight, in nanoseconds. */
+    public long getPropagationDelay () {
+
+	return propagationDelay;
+
+    } // getPropagationDelay ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  bits A number of bits.
+     * @return the time needed to put that many bits onto the medium, in
+     *         nanoseconds.
+     */
+    public long transmissionTime (long bits) {
+
+	return bits * Scheduler.NANOS_PER_SECOND / bitRate;
+
+    } // transmissionTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return whether senders on this medium contend for it, and so must
+     *         listen before sending and be told of collisions.  Unless a
+     *         subclass says otherwise, they do not.
+     */
+    public boolean detectsCollisions () {
+
+	return false;
+
+    } // detectsCollisions ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Listen to the medium on behalf of a client.
+     *
+     * @param  listener The client physical layer listening.
+     * @return the simulated time until which the listener hears another
+     *         sender on the medium.  A time no later than now means that the
+     *         medium is idle.  Unless a subclass says otherwise, it always
+     *         is.
+     */
+    public long carrierUntil (PhysicalLayer listener) {
+
+	return getScheduler(listener).now();
+
+    } // carrierUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the unit of time by which contending senders back off, in
+     *         nanoseconds: long enough for a signal to cross the medium and
+     *         return.
+     */
+    public long getSlotTime () {
+
+	return 2 * propagationDelay;
+
+    } // getSlotTime ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Register the given client as connected to the medium.  If the client is
@@ -87,15 +292,266 @@ public abstract class Medium {
     public void register (PhysicalLayer client) {
 
 	// Only add this client if it is not already registered.
-	if (!clients.contains(client)) {
-	    clients.add(client);
+	if (clientIndex.containsKey(client)) {
+	    return;
 	}
 
+	// Never change the array that senders may be walking; replace it with
+	// a new snapshot that includes the client.
+	PhysicalLayer[] newClients = new PhysicalLayer[clients.length + 1];
+	System.arraycopy(clients, 0, newClients, 0, clients.length);
+	newClients[clients.length] = client;
+	clientIndex.put(client, clients.length);
+	clients = newClients;
+
+	long[] newFreeAt = new long[newClients.length];
+	System.arraycopy(transmitterFreeAt, 0,
+			 newFreeAt,         0,
+			 transmitterFreeAt.length);
+	transmitterFreeAt = newFreeAt;
+
     } // register ()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * Find where a client sits in the snapshot of registered clients.
+     *
+     * @param  client The physical layer to look up.
+     * @return the index of the client in <code>clients</code>, or
+     *         <code>-1</code> if it is not registered with this medium.
+     */
+    public int indexOf (PhysicalLayer client) {
+
+	Integer index = clientIndex.get(client);
+	return (index == null ? -1 : index);
+
+    } // indexOf ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Verify that a sender is allowed to use this medium.
+     *
+     * @param  sender The client physical layer attempting to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    protected void checkSender (PhysicalLayer sender) {
+
+	if (!clientIndex.containsKey(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+
+    } // checkSender ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Account for a sender putting bits onto the medium.  A sender sends one
+     * thing at a time, so these bits begin once the sender's earlier bits are
+     * all sent, and then take their transmission time to send and the
+     * propagation delay to arrive.
+     *
+     * @param  sender The client physical layer sending the bits.
+     * @param  bits   The number of bits being sent.
+     * @return the simulated time at which the last of the bits arrives.
+     */
+    protected long arrivalTime (PhysicalLayer sender, long bits) {
+
+	int  index = indexOf(sender);
+	long start = Math.max(scheduler.now(), transmitterFreeAt[index]);
+	long end   = start + transmissionTime(bits);
+	transmitterFreeAt[index] = end;
+	return end + propagationDelay;
+
+    } // arrivalTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record, if capturing, a run of bytes put onto the medium.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     */
+    protected void capture (PhysicalLayer sender,
+			    byte[]        data,
+			    int           offset,
+			    int           length) {
+
+	if (capture != null) {
+	    capture.recordTransmit(getScheduler(sender).now(),
+				   indexOf(sender),
+				   data,
+				   offset,
+				   length * BITS_PER_BYTE);
+	}
+
+    } // capture ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record, if capturing, a bit put onto the medium.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit    The bit.
+     */
+    protected void capture (PhysicalLayer sender, boolean bit) {
+
+	if (capture != null) {
+	    capture.recordTransmit(getScheduler(sender).now(),
+				   indexOf(sender),
+				   (bit ? ONE_BIT : ZERO_BIT),
+				   0,
+				   1);
+	}
+
+    } // capture ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record, if capturing, the damage done to one receiver's copy of a run
+     * of bytes.
+     *
+     * @param sender   The client physical layer that sent the bytes.
+     * @param receiver The client physical layer receiving the copy.
+     * @param sent     The buffer holding the bytes as sent.
+     * @param offset   The index of the first byte sent.
+     * @param received The receiver's copy, from index 0.
+     * @param length   The number of bytes.
+     */
+    protected void captureDamage (PhysicalLayer sender,
+				  PhysicalLayer receiver,
+				  byte[]        sent,
+				  int           offset,
+				  byte[]        received,
+				  int           length) {
+
+	if (capture != null) {
+	    capture.recordFlips(getScheduler(sender).now(),
+				indexOf(sender),
+				indexOf(receiver),
+				sent,
+				offset,
+				received,
+				length);
+	}
+
+    } // captureDamage ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record, if capturing, that one receiver's copy of a bit was flipped.
+     *
+     * @param sender   The client physical layer that sent the bit.
+     * @param receiver The client physical layer receiving the copy.
+     * @param bit      The bit as sent.
+     */
+    protected void captureDamage (PhysicalLayer sender,
+				  PhysicalLayer receiver,
+				  boolean       bit) {
+
+	if (capture != null) {
+	    captureDamage(sender,
+			  receiver,
+			  (bit ? ONE_BIT : ZERO_BIT),
+			  0,
+			  (bit ? ZERO_BIT : ONE_BIT),
+			  1);
+	}
+
+    } // captureDamage ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Arrange for a run of bytes to reach a receiver at a given time.
+     *
+     * @param receiver The client physical layer to receive the bytes.
+     * @param time     The simulated time at which the bytes arrive.
+     * @param data     The bytes to deliver.  The medium gives up the array,
+     *                 which must not be changed afterwards.
+     * @return the delivery, which may be cancelled.
+     */
+    protected Scheduler.Event deliver (PhysicalLayer receiver,
+				       long          time,
+				       byte[]        data) {
+
+	return deliver(receiver, time, data, data.length * BITS_PER_BYTE);
+
+    } // deliver ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Arrange for a bit to reach a receiver at a given time.
+     *
+     * @param receiver The client physical layer to receive the bit.
+     * @param time     The simulated time at which the bit arrives.
+     * @param bit      The bit to deliver.
+     * @return the delivery, which may be cancelled.
+     */
+    protected Scheduler.Event deliver (PhysicalLayer receiver,
+				       long          time,
+				       boolean       bit) {
+
+	return deliver(receiver, time, (bit ? ONE_BIT : ZERO_BIT), 1);
+
+    } // deliver ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Arrange for a run of bits to reach a receiver at a given time.  The
+     * scheduler's event loop posts the run to the receiver's mailbox when the
+     * time comes, so no receiver is ever called from within a sender.
+     *
+     * @param receiver The client physical layer to receive the bits.
+     * @param time     The simulated time at which the bits arrive.
+     * @param data     The bits to deliver, packed most significant first.  The
+     *                 medium gives up the array, which must not be changed
+     *                 afterwards.
+     * @param bits     The number of bits to deliver.
+     * @return the delivery, which may be cancelled.
+     */
+    protected Scheduler.Event deliver (final PhysicalLayer receiver,
+				       long                time,
+				       final byte[]        data,
+				       final int           bits) {
+
+	return scheduler.scheduleAt(time, () -> receiver.post(data, bits));
+
+    } // deliver ()
+    // =========================================================================
+
+
+
     // =========================================================================
     // Send a bit from one physical layer to others.
     abstract public void transmit (PhysicalLayer sender, boolean bit);
@@ -103,11 +559,76 @@ public abstract class Medium {
 
 
 
+    // =========================================================================
+    /**
+     * Send a run of whole bytes from one physical layer to others.  The bits
+     * are sent most significant first, exactly as the equivalent sequence of
+     * calls to <code>transmit(PhysicalLayer, boolean)</code> would send them.
+     * This default is that sequence of calls; subclasses should override it
+     * to move the whole run across the medium in one step.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.  It is not modified,
+     *               and it may be reused by the sender once this call returns.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	for (int i = offset; i < offset + length; i += 1) {
+	    for (int j = BITS_PER_BYTE - 1; j >= 0; j -= 1) {
+		transmit(sender, ((data[i] >>> j) & 1) != 0);
+	    }
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
     // =========================================================================
     // DATA MEMBERS
 
-    /** The physical layer clients connected to the medium. */
-    protected Collection<PhysicalLayer> clients;    
+    /**
+     * The physical layer clients connected to the medium, in order of
+     * registration.  The array is never modified once published, so it may
+     * be walked without copying or locking.
+     */
+    protected PhysicalLayer[] clients;
+
+    /** The position of each client in <code>clients</code>, by identity. */
+    private Map<PhysicalLayer, Integer> clientIndex;
+
+    /** When each client, by position, will have finished sending. */
+    private long[] transmitterFreeAt;
+
+    /** The scheduler that keeps time for this medium. */
+    protected Scheduler scheduler;
+
+    /** The record of this medium's traffic, or <code>null</code> for none. */
+    private WireCapture capture;
+
+    /** The rate at which bits are sent, in bits per second. */
+    private long bitRate;
+
+    /** The time a bit spends in flight, in nanoseconds. */
+    private long propagationDelay;
+
+    /** The default bit rate: 10 Mb/s. */
+    public static final long DEFAULT_BIT_RATE          = 10000000L;
+
+    /** The default propagation delay: 10 us, roughly 2 km of cable. */
+    public static final long DEFAULT_PROPAGATION_DELAY = 10000L;
+
+    /** The number of bits in a byte. */
+    protected static final int     BITS_PER_BYTE = 8;
+
+    /** Single bits, packed for delivery; shared, so never to be modified. */
+    private static final byte[]    ZERO_BIT      = { (byte)0x00 };
+    private static final byte[]    ONE_BIT       = { (byte)0x80 };
 
     /** Whether to emit debugging information. */
     protected static final boolean debug = false;
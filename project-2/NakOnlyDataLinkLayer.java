@@ -0,0 +1,371 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+// =============================================================================
+
+
+// =============================================================================
+/**
+* @file   NakOnlyDataLinkLayer.java
+* @author Kyler Kopacz (kkopacz21@amherst.edu)
+* @date   October 2018
+*
+* A data link layer that keeps a window of frames in flight and a reorder
+* buffer, but never waits on positive acknowledgments, for links on which
+* nearly every frame arrives intact.  The sender streams frames, keeping
+* each in its window as a bounded retransmission buffer, and stops only
+* when that buffer is full.  The receiver holds frames that arrive out of
+* order, and reports only the gaps: as soon as a frame arrives past one, it sends a
+* NAK naming the run of frames missing, which the sender sends again.  Now
+* and then, after a number of frames or a short interval, the receiver also
+* sends a status frame naming the next frame it expects, which frees every
+* frame before that one from the sender's buffer; while any gap remains, it
+* asks for the frames missing again along with each status.  A frame lost
+* with none after it to reveal the gap is found only when the sender, having
+* heard nothing for a timeout interval, sends every frame it keeps again.
+*/
+public class NakOnlyDataLinkLayer extends ReorderingDataLinkLayer {
+  // =============================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Connect this layer to the physical layer below it, and size its buffers
+  * and set how often it reports its status as given by the system
+  * properties <code>dataLinkLayer.window</code>,
+  * <code>dataLinkLayer.statusEvery</code>, and
+  * <code>dataLinkLayer.statusInterval</code>.
+  *
+  * @param physicalLayer The physical layer by which to communicate.
+  */
+  protected void connect (PhysicalLayer physicalLayer) {
+
+    super.connect(physicalLayer);
+    setWindowSize(Integer.getInteger("dataLinkLayer.window",
+    DEFAULT_WINDOW_SIZE));
+    setStatusEvery(Integer.getInteger("dataLinkLayer.statusEvery",
+    Math.max(1, windowSize / 2)));
+    setStatusInterval(Long.getLong("dataLinkLayer.statusInterval",
+    Scheduler.millis(DEFAULT_STATUS_INTERVAL)));
+
+  } // connect ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set how many frames the receiver delivers before it reports its status,
+  * without waiting out the status interval.  Fewer than half the window
+  * keeps the sender from ever filling its buffer on a clean link.
+  *
+  * @param  statusEvery The number of frames.
+  * @throws RuntimeException if the number is not positive.
+  */
+  public void setStatusEvery (int statusEvery) {
+
+    if (statusEvery <= 0) {
+      throw new RuntimeException("Invalid status interval " + statusEvery);
+    }
+    this.statusEvery = statusEvery;
+
+  } // setStatusEvery ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set how long after receiving a frame the receiver reports its status, if
+  * it has not since, and how often it asks again for frames still missing.
+  *
+  * @param  statusInterval The interval, in nanoseconds of simulated time.
+  * @throws RuntimeException if the interval is not positive.
+  */
+  public void setStatusInterval (long statusInterval) {
+
+    if (statusInterval <= 0) {
+      throw new RuntimeException("Invalid status interval " + statusInterval);
+    }
+    this.statusInterval = statusInterval;
+
+  } // setStatusInterval ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Transmit a frame kept to send again, and time the frames kept, if they
+  * are not already being timed.
+  *
+  * @param number The frame's number, as an unsigned value.
+  */
+  protected void transmitFrame (int number) {
+
+    transmit(sent[number]);
+    if (pollTimer == null) {
+      pollTimer = setTimer(Scheduler.millis(TIMEOUT_INTERVAL), poll);
+    }
+
+  } // transmitFrame ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Nothing has been heard of the frames in the buffer for a timeout
+  * interval, so the last of them, with none after to reveal that they are
+  * missing, or the status reporting them, may have been lost.  Send them
+  * all again; the receiver answers those it had already with its status.
+  */
+  private void timeOut () {
+
+    pollTimer = null;
+    if (oldestUnacknowledged == nextToSend) {
+      return;
+    }
+    recordExchange(sent[oldestUnacknowledged & 0xff].remaining(), false);
+    for (byte number = oldestUnacknowledged;
+    number != nextToSend;
+    number = (byte)(number + 1)) {
+      transmit(sent[number & 0xff]);
+    }
+    pollTimer = setTimer(Scheduler.millis(TIMEOUT_INTERVAL), poll);
+
+  } // timeOut ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An intact response frame has arrived: a status, or a NAK of a run of
+  * frames.  One of the wrong length is ignored.
+  *
+  * @param type        The kind of response.
+  * @param frameNumber The number of the frame it names.
+  * @param length      The length of its contents.
+  */
+  protected void receiveResponse (byte type, byte frameNumber, int length) {
+
+    if (type == STATUS && length == headerSize) {
+      receiveStatus(frameNumber);
+    } else if (type == NAK_RANGE && length == headerSize + 1) {
+      receiveNAK(frameNumber, receivedFrame[headerSize] & 0xff);
+    }
+
+  } // receiveResponse ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An old frame sent again means that the sender has not heard as much as
+  * has been delivered, so tell it.
+  *
+  * @param source The station that sent the frame.
+  */
+  protected void reportDelivered (byte source) {
+
+    sendStatus(source);
+
+  } // reportDelivered ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Ask for a run of frames that is missing with a single NAK.
+  *
+  * @param first  The number of the first frame missing.
+  * @param count  The number of frames missing.
+  * @param source The station that sent them.
+  */
+  protected void reportMissing (byte first, int count, byte source) {
+
+    sendResponseFrame(NAK_RANGE, first, source, (byte) count);
+
+  } // reportMissing ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A data frame has been held and every frame then in order delivered.
+  * Report the status once enough frames have been delivered, or else soon.
+  *
+  * @param frameNumber The number of the frame.
+  * @param ahead       How far past the next frame expected it was.
+  * @param delivered   The number of frames delivered.
+  * @param source      The station that sent it.
+  */
+  protected void receivedData (byte frameNumber,
+  int ahead,
+  int delivered,
+  byte source) {
+
+    unreported        += delivered;
+    statusDestination  = source;
+    if (unreported >= statusEvery) {
+      sendStatus(source);
+    } else if (statusTimer == null) {
+      statusTimer = setTimer(statusInterval, statusTimeOut);
+    }
+
+  } // receivedData ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Report the next frame expected, and so that every one before it has
+  * arrived.
+  *
+  * @param destination The station sending the frames.
+  */
+  private void sendStatus (byte destination) {
+
+    unreported = 0;
+    sendResponseFrame(STATUS, nextExpected, destination);
+
+  } // sendStatus ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * The status interval has passed since a frame arrived.  Report the
+  * status, and ask again for every run of frames still missing, in case the
+  * frames sent again were lost too, and keep doing so while any are.
+  */
+  private void reportStatus () {
+
+    statusTimer = null;
+    sendStatus(statusDestination);
+    if (held == 0) {
+      return;
+    }
+    reportAllMissing(statusDestination);
+    statusTimer = setTimer(statusInterval, statusTimeOut);
+
+  } // reportStatus ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A status has arrived, naming the next frame that the receiver expects.
+  * Every frame before that one has arrived, so free them all, and send more
+  * in their place.  A status about frames not in the buffer is ignored.
+  *
+  * @param next The number of the next frame expected.
+  */
+  private void receiveStatus (byte next) {
+
+    int received = (next - oldestUnacknowledged) & 0xff;
+    if (received > getFramesInFlight() || received == 0) {
+      return;
+    }
+    releaseBefore(next);
+
+    // The receiver is being heard from, so wait afresh before polling it.
+    if (pollTimer != null) {
+      pollTimer.cancel();
+      pollTimer = null;
+    }
+    if (oldestUnacknowledged != nextToSend) {
+      pollTimer = setTimer(Scheduler.millis(TIMEOUT_INTERVAL), poll);
+    }
+
+    fillWindow();
+
+  } // receiveStatus ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A NAK has arrived, naming a run of frames that the receiver is missing.
+  * Send each of them again that is still in the buffer.
+  *
+  * @param first The number of the first frame missing.
+  * @param count The number of frames missing.
+  */
+  private void receiveNAK (byte first, int count) {
+
+    int inFlight = getFramesInFlight();
+    int offset   = (first - oldestUnacknowledged) & 0xff;
+    for (int i = offset; i < offset + count && i < inFlight; i += 1) {
+      ByteBuffer frame = sent[(oldestUnacknowledged + i) & 0xff];
+      recordExchange(frame.remaining(), false);
+      transmit(frame);
+    }
+
+  } // receiveNAK ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  // DATA MEMBERS
+
+  /**
+  * The timer that sends the oldest frame again if nothing is heard of the
+  * frames kept, and what it does.
+  */
+  private Scheduler.Event   pollTimer;
+  private final Runnable    poll = () -> timeOut();
+
+  /**
+  * How many frames may be delivered before the status is reported, and how
+  * many have been since it last was.
+  */
+  private int               statusEvery;
+  private int               unreported;
+
+  /**
+  * How long after a frame arrives the status is reported, in nanoseconds,
+  * the timer that does so, and what it does.
+  */
+  private long              statusInterval;
+  private Scheduler.Event   statusTimer;
+  private final Runnable    statusTimeOut = () -> reportStatus();
+
+  /** The station to which the status is reported. */
+  private byte              statusDestination;
+
+  /**
+  * The status of a response that names the next frame expected, and so
+  * reports every frame before it received.
+  */
+  private static final byte STATUS    = (byte) 0b00010010;
+
+  /**
+  * The status of a response that names the first of a run of frames
+  * missing, followed by a byte with the length of the run.
+  */
+  private static final byte NAK_RANGE = (byte) 0b00010011;
+
+  /** The window size used unless another is given. */
+  public static final int   DEFAULT_WINDOW_SIZE = 64;
+
+  /** The status interval used unless another is given, in milliseconds. */
+  public static final long  DEFAULT_STATUS_INTERVAL = 1;
+  // =========================================================================
+
+
+
+  // =============================================================================
+} // class NakOnlyDataLinkLayer
+// =============================================================================
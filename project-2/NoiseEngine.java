@@ -0,0 +1,250 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.SplittableRandom;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A source of independent bit errors for a noisy medium.  Rather than rolling
+ * a random number for every bit, the engine draws the number of error-free
+ * bits that precede the next flipped bit from a geometric distribution, and
+ * then simply counts bits down to it.  The random number generator is thus
+ * consulted once per error, not once per bit.
+ *
+ * Each engine owns its generator, so two engines built with the same error
+ * probability and seed produce exactly the same errors at exactly the same
+ * bit positions.
+ *
+ * @file   NoiseEngine.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class NoiseEngine {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an engine whose errors are reproducible from the given seed.
+     *
+     * @param errorProbability The probability that any one bit is flipped.
+     * @param seed             The seed for the engine's random numbers.
+     */
+    public NoiseEngine (double errorProbability, long seed) {
+
+	this(errorProbability, new SplittableRandom(seed));
+
+    } // NoiseEngine ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an engine whose errors are not reproducible.
+     *
+     * @param errorProbability The probability that any one bit is flipped.
+     */
+    public NoiseEngine (double errorProbability) {
+
+	this(errorProbability, new SplittableRandom());
+
+    } // NoiseEngine ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    private NoiseEngine (double errorProbability, SplittableRandom random) {
+
+	this.random = random;
+	setErrorProbability(errorProbability);
+
+    } // NoiseEngine ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Change the probability that any one bit is flipped.  The distance to
+     * the next error is drawn afresh at the new probability.
+     *
+     * @param  errorProbability The new probability, in <code>[0, 1]</code>.
+     * @throws RuntimeException if the probability is out of range.
+     */
+    public void setErrorProbability (double errorProbability) {
+
+	if (!(errorProbability >= 0.0 && errorProbability <= 1.0)) {
+	    throw new RuntimeException("Invalid error probability " +
+				       errorProbability);
+	}
+	this.errorProbability = errorProbability;
+	bitsUntilError        = geometric(random, errorProbability);
+
+    } // setErrorProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the probability that any one bit is flipped. */
+    public double getErrorProbability () {
+
+	return errorProbability;
+
+    } // getErrorProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Advance past one bit, reporting whether it is to be flipped.
+     *
+     * @return <code>true</code> if the bit is flipped.
+     */
+    public boolean nextBitFlips () {
+
+	if (bitsUntilError > 0) {
+	    bitsUntilError -= 1;
+	    return false;
+	}
+	bitsUntilError = geometric(random, errorProbability);
+	return true;
+
+    } // nextBitFlips ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of bits that will pass unharmed before the next
+     *         error.
+     */
+    public long bitsUntilError () {
+
+	return bitsUntilError;
+
+    } // bitsUntilError ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Advance past a run of bytes that is known to contain no error, that is,
+     * one no longer than <code>bitsUntilError()</code> bits.
+     *
+     * @param length The number of bytes.
+     */
+    public void skip (int length) {
+
+	bitsUntilError -= (long)length * BITS_PER_BYTE;
+
+    } // skip ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Advance past a run of bytes, flipping in place each bit that is to be
+     * flipped.  Bits are counted most significant first, as they are sent.
+     *
+     * @param  data   The buffer holding the bytes to corrupt.
+     * @param  offset The index of the first byte.
+     * @param  length The number of bytes.
+     * @return the number of bits flipped.
+     */
+    public int corrupt (byte[] data, int offset, int length) {
+
+	long bits     = (long)length * BITS_PER_BYTE;
+	long position = bitsUntilError;
+	int  flipped  = 0;
+	while (position < bits) {
+
+	    if (debug) {
+		System.out.printf("NoiseEngine.corrupt(): Flipped bit %d\n",
+				  position);
+	    }
+	    data[offset + (int)(position >>> 3)] ^=
+		(byte)(0x80 >>> (int)(position & 7));
+	    flipped  += 1;
+	    position += 1 + geometric(random, errorProbability);
+
+	}
+	bitsUntilError = position - bits;
+
+	return flipped;
+
+    } // corrupt ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Draw the number of failures that precede the first success in a series
+     * of independent trials, each of which succeeds with the given
+     * probability, by inverting the geometric distribution.
+     *
+     * @param  random      The source of random numbers.
+     * @param  probability The probability of success for each trial.
+     * @return the number of failures, or <code>Long.MAX_VALUE</code> if success
+     *         is impossible.
+     */
+    public static long geometric (SplittableRandom random, double probability) {
+
+	if (probability <= 0.0) {
+	    return Long.MAX_VALUE;
+	}
+	if (probability >= 1.0) {
+	    return 0;
+	}
+
+	// 1 - nextDouble() lies in (0, 1], so its logarithm is finite.
+	double failures = Math.floor(Math.log(1.0 - random.nextDouble()) /
+				     Math.log1p(-probability));
+	return (failures >= Long.MAX_VALUE ? Long.MAX_VALUE : (long)failures);
+
+    } // geometric ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The source of random numbers, owned by this engine alone. */
+    private final SplittableRandom random;
+
+    /** The probability that any one bit is flipped. */
+    private double errorProbability;
+
+    /** The number of bits that will pass unharmed before the next error. */
+    private long bitsUntilError;
+
+    /** The number of bits in a byte. */
+    private static final int BITS_PER_BYTE = 8;
+
+    /** Whether to emit debugging information. */
+    private static final boolean debug = false;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class NoiseEngine
+// =============================================================================
@@ -1,8 +1,7 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.Arrays;
 // =============================================================================
 
 
@@ -40,17 +39,53 @@ public class PerfectMedium extends Medium {
     public void transmit (PhysicalLayer sender, boolean bit) {
 
 	// Only registered clients may send.
-	if (!clients.contains(sender)) {
-	    throw new RuntimeException("Unregistered sender on the medium");
-	}
-	
+	checkSender(sender);
+	capture(sender, bit);
+	long arrival = arrivalTime(sender, 1);
+
 	// Deliver the bit to each client that is not the sender.
-	Iterator<PhysicalLayer> clientIterator = clients.iterator();
-	while (clientIterator.hasNext()) {
-	    
-	    PhysicalLayer receiver = clientIterator.next();
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver != sender) {
+		deliver(receiver, arrival, bit);
+	    }
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one client to the other clients, handing the
+     * whole run to each receiver at once when its last bit arrives.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	long arrival = arrivalTime(sender, (long)length * BITS_PER_BYTE);
+
+	// Deliver the same copy of the bytes to each client that is not the
+	// sender.
+	byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+	for (PhysicalLayer receiver : clients) {
+
 	    if (receiver != sender) {
-		receiver.receive(bit);
+		deliver(receiver, arrival, copy);
 	    }
 
 	}
@@ -1,3 +1,11 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.ArrayDeque;
+// =============================================================================
+
+
+
 // =============================================================================
 /**
  * Transmits bits across a medium.
@@ -38,15 +46,23 @@ public class PhysicalLayer {
     // =========================================================================
     /**
      * The constructor.  Attach the new physical layer to the given medium.
+     * The layer applies the line code named by the system property
+     * <code>physicalLayer.lineCoding</code>, if given.
      *
      * @param medium The medium through which this physical layer will signal.
      */
     public PhysicalLayer (Medium medium) {
 
 	// Connect the client to the media.
-	this.medium = medium;
+	this.medium  = medium;
+	this.mailbox = new ArrayDeque<Arrival>();
 	medium.register(this);
 
+	String lineCodingType = System.getProperty("physicalLayer.lineCoding");
+	if (lineCodingType != null && !lineCodingType.isEmpty()) {
+	    setLineCoding(LineCoding.create(lineCodingType));
+	}
+
     } // PhysicalLayer ()
     // =========================================================================
 
@@ -76,13 +92,83 @@ public class PhysicalLayer {
 
     // =========================================================================
     /**
-     * Send a client's bit via the medium.
+     * Set the line code applied to the bits this layer sends and receives.
+     * Both ends of a link must use the same code.  Must be done before any
+     * sending.
+     *
+     * @param lineCoding The code, or <code>null</code> to send bits as they
+     *                   are.
+     */
+    public void setLineCoding (LineCoding lineCoding) {
+
+	this.lineCoding = lineCoding;
+	this.decoder    = (lineCoding == null
+			   ? null
+			   : new LineCoding.Decoder(lineCoding));
+
+    } // setLineCoding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the line code in use, or <code>null</code> if there is none. */
+    public LineCoding getLineCoding () {
+
+	return lineCoding;
+
+    } // getLineCoding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of code violations received. */
+    public long getCodeViolations () {
+
+	return (decoder == null ? 0 : decoder.getViolations());
+
+    } // getCodeViolations ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the scheduler that keeps time for this layer, as assigned by
+     *         its medium.
+     */
+    public Scheduler getScheduler () {
+
+	return medium.getScheduler(this);
+
+    } // getScheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a client's bit via the medium.  Under a line code, bits are held
+     * until they make up a byte, which is then coded and sent.
      *
      * @param bit The bit value to send.
      */
     public void send (boolean bit) {
 
-	medium.transmit(this, bit);
+	if (lineCoding == null) {
+	    medium.transmit(this, bit);
+	    return;
+	}
+
+	pendingByte  = (pendingByte << 1) | (bit ? 1 : 0);
+	pendingBits += 1;
+	if (pendingBits == BITS_PER_BYTE) {
+	    byte[] data = { (byte)pendingByte };
+	    pendingByte = 0;
+	    pendingBits = 0;
+	    send(data, 0, 1);
+	}
 
     } // send ()
     // =========================================================================
@@ -91,17 +177,251 @@ public class PhysicalLayer {
 
     // =========================================================================
     /**
-     * Called by the medium to deliver a bit, which is then in turn delivered to
-     * the client data link layer.
+     * Called by a medium that delivers a bit at a time.  The bit arrives
+     * just as a run of one bit would, through <code>post()</code>, so it
+     * waits its turn in the mailbox and is decoded under a line code.
      *
      * @param bit The bit received from the medium.
      */
     public void receive (boolean bit) {
 
-	client.receive(bit);
+	post((bit ? ONE_BIT : ZERO_BIT), 1);
 
-    }
-    // ===============================================================
+    } // receive ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of a client's bytes via the medium in a single step.  The
+     * bits are sent most significant first, just as a sequence of calls to
+     * <code>send(boolean)</code> would send them.  Under a line code, the
+     * run is coded first.
+     *
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     */
+    public void send (byte[] data, int offset, int length) {
+
+	if (lineCoding == null) {
+	    medium.transmit(this, data, offset, length);
+	    return;
+	}
+
+	int encodedLength = lineCoding.encodedLength(length);
+	if (encodeBuffer == null || encodeBuffer.length < encodedLength) {
+	    encodeBuffer = new byte[encodedLength];
+	}
+	medium.transmit(this,
+			encodeBuffer,
+			0,
+			lineCoding.encode(data, offset, length, encodeBuffer));
+
+    } // send ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return whether this layer's medium is contended for. */
+    public boolean detectsCollisions () {
+
+	return medium.detectsCollisions();
+
+    } // detectsCollisions ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Listen to the medium.
+     *
+     * @return the simulated time until which another sender is heard; a time
+     *         no later than now means that the medium is idle.
+     */
+    public long carrierUntil () {
+
+	return medium.carrierUntil(this);
+
+    } // carrierUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return this layer's place among the clients of its medium. */
+    public int getStation () {
+
+	return medium.indexOf(this);
+
+    } // getStation ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the medium's backoff slot time, in nanoseconds. */
+    public long getSlotTime () {
+
+	return medium.getSlotTime();
+
+    } // getSlotTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  bits A number of bits.
+     * @return the time the medium takes to send that many bits, in
+     *         nanoseconds.
+     */
+    public long transmissionTime (long bits) {
+
+	return medium.transmissionTime(bits);
+
+    } // transmissionTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Called by a contended medium, from the event loop, when this layer's
+     * last transmission has gone out without colliding.
+     */
+    public void transmitted () {
+
+	client.transmitted();
+
+    } // transmitted ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Called by a contended medium, from the event loop, when this layer's
+     * last transmission collided with another and was cut short.
+     */
+    public void collision () {
+
+	client.collision();
+
+    } // collision ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Called by the medium, from the event loop, when a run of bits arrives.
+     * The bits are handed to the client data link layer, most significant
+     * first.  If this layer is already handing an earlier arrival to its
+     * client, the run waits in this layer's mailbox until the client is done.
+     * The client is therefore never re-entered, however the arrival came
+     * about, and every client callback runs on a flat stack.
+     *
+     * @param data The buffer holding the bits received, packed most
+     *             significant first.  It belongs to the medium, and must not
+     *             be modified or retained.
+     * @param bits The number of bits received, beginning with the first bit
+     *             of the buffer.
+     */
+    public void post (byte[] data, int bits) {
+
+	// If the client is busy, let this run wait its turn.
+	if (delivering) {
+	    mailbox.add(new Arrival(data, bits));
+	    return;
+	}
+
+	// Otherwise, hand the client this run, and then any others that arrive
+	// while it is busy with this one.
+	delivering = true;
+	try {
+	    dispatch(data, bits);
+	    Arrival arrival = mailbox.poll();
+	    while (arrival != null) {
+		dispatch(arrival.data, arrival.bits);
+		arrival = mailbox.poll();
+	    }
+	} finally {
+	    delivering = false;
+	}
+
+    } // post ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Hand a run of bits to the client: the whole bytes as a run, and then
+     * any bits left over together.  Under a line code, the bits are decoded
+     * first.
+     */
+    private void dispatch (byte[] data, int bits) {
+
+	if (decoder != null) {
+	    int decodedLength = decoder.maxDecodedLength(bits);
+	    if (decodeBuffer == null || decodeBuffer.length < decodedLength) {
+		decodeBuffer = new byte[decodedLength];
+	    }
+	    client.receiveBytes(decodeBuffer,
+				0,
+				decoder.decode(data, bits, decodeBuffer));
+	    return;
+	}
+
+	int wholeBytes = bits / BITS_PER_BYTE;
+	if (wholeBytes > 0) {
+	    client.receiveBytes(data, 0, wholeBytes);
+	}
+	int leftover = bits - wholeBytes * BITS_PER_BYTE;
+	if (leftover > 0) {
+	    client.receiveBits((data[wholeBytes] & 0xff) >>>
+			       (BITS_PER_BYTE - leftover),
+			       leftover);
+	}
+
+    } // dispatch ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** A run of bits waiting in the mailbox. */
+    private static class Arrival {
+
+	Arrival (byte[] data, int bits) {
+	    this.data = data;
+	    this.bits = bits;
+	}
+
+	/** The bits, packed most significant first. */
+	final byte[] data;
+
+	/** The number of bits. */
+	final int    bits;
+
+    } // class Arrival
+    // =========================================================================
 
 
 
@@ -113,6 +433,33 @@ public class PhysicalLayer {
 
     /** The data link layer above this physical layer. */
     private DataLinkLayer client;
+
+    /** Arrivals waiting for the client to finish with an earlier one. */
+    private ArrayDeque<Arrival> mailbox;
+
+    /** Whether an arrival is currently being handed to the client. */
+    private boolean delivering;
+
+    /** The line code applied, or <code>null</code> if there is none. */
+    private LineCoding lineCoding;
+
+    /** The decoding of received bits under the line code. */
+    private LineCoding.Decoder decoder;
+
+    /** Reused buffers for coded bits sent and decoded bytes received. */
+    private byte[] encodeBuffer;
+    private byte[] decodeBuffer;
+
+    /** Bits sent singly, held under a line code until they make a byte. */
+    private int pendingByte;
+    private int pendingBits;
+
+    /** The number of bits in a byte. */
+    private static final int BITS_PER_BYTE = 8;
+
+    /** Single-bit runs, as posted by <code>receive(boolean)</code>. */
+    private static final byte[] ONE_BIT  = { (byte)0x80 };
+    private static final byte[] ZERO_BIT = { (byte)0x00 };
     // ===============================================================
 
 
@@ -0,0 +1,483 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+// =============================================================================
+
+
+// =============================================================================
+/**
+* @file   ReorderingDataLinkLayer.java
+* @author Kyler Kopacz (kkopacz21@amherst.edu)
+* @date   October 2018
+*
+* A data link layer that frames and checks data just as the CRC layer does,
+* keeps a window of frames in flight, numbered modulo 256, and holds frames
+* that arrive out of order in a reorder buffer until those before them
+* arrive, handing frames to the host only in order.  What a receiver says
+* about the frames it has, and when a sender sends a frame again, is left
+* to subclasses.
+*/
+public abstract class ReorderingDataLinkLayer extends CRCDataLinkLayer {
+  // =============================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set the most frames that may be in flight at once, which is also the
+  * most that the receiver holds out of order.  Must be done before any
+  * sending.
+  *
+  * @param  windowSize The number of frames.
+  * @throws RuntimeException if the size is not positive, or is too large
+  *                          for frame numbers to tell old frames from new.
+  */
+  public void setWindowSize (int windowSize) {
+
+    if (windowSize <= 0 || windowSize > MAX_WINDOW_SIZE) {
+      throw new RuntimeException("Invalid window size " + windowSize);
+    }
+    this.windowSize = windowSize;
+    createSlots();
+
+  } // setWindowSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the most frames that may be in flight at once. */
+  public int getWindowSize () {
+
+    return windowSize;
+
+  } // getWindowSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set the most data bytes per frame, and make the reorder buffer's slots
+  * that large.
+  *
+  * @param frameSize The most data bytes per frame.
+  */
+  public void setFrameSize (int frameSize) {
+
+    super.setFrameSize(frameSize);
+    createSlots();
+
+  } // setFrameSize ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Send a sequence of bytes through the physical layer.  As many frames are
+  * sent at once as the window allows; each frame released from the start
+  * of the window then makes room for more, until the buffer is empty.
+  *
+  * @param data The sequence of bytes to send.
+  */
+  public void send (byte[] data) {
+
+    bufferForSending(data);
+    fillWindow();
+
+  } // send ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * @return whether every buffered byte has been sent and acknowledged.
+  */
+  public boolean isIdle () {
+
+    return super.isIdle() && oldestUnacknowledged == nextToSend;
+
+  } // isIdle ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Embed a raw sequence of bytes into a frame numbered as the next frame to
+  * be sent.
+  *
+  * @param  data The raw sequence of bytes to be framed, which is consumed.
+  * @return A complete frame, in a pooled buffer.
+  */
+  public ByteBuffer createFrame (ByteBuffer data) {
+
+    return createFrame(data, nextToSend);
+
+  } // createFrame ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Frame the next frame-worth of data and transmit it, keeping the frame
+  * until it is released.
+  */
+  protected void sendNextFrame () {
+
+    int number = nextToSend & 0xff;
+    sent[number] = createNextFrame();
+    nextToSend   = (byte)(nextToSend + 1);
+    transmitFrame(number);
+
+  } // sendNextFrame ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Transmit a frame in flight, for the first time or again, starting
+  * whatever timer the subclass keeps on it.
+  *
+  * @param number The frame's number, as an unsigned value.
+  */
+  abstract protected void transmitFrame (int number);
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** Send frames until the window is full or nothing is left to send. */
+  protected void fillWindow () {
+
+    while (getFramesInFlight() < windowSize && !sendBuffer.isEmpty()) {
+      sendNextFrame();
+    }
+
+  } // fillWindow ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** @return the number of frames sent and not yet slid past. */
+  protected int getFramesInFlight () {
+
+    return (nextToSend - oldestUnacknowledged) & 0xff;
+
+  } // getFramesInFlight ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A frame in flight has been received, so free its buffer.  A frame
+  * already released is left alone.
+  *
+  * @param number The frame's number, as an unsigned value.
+  */
+  protected void release (int number) {
+
+    if (sent[number] == null) {
+      return;
+    }
+    recordExchange(sent[number].remaining() + 2 + headerSize, true);
+    framePool.release(sent[number]);
+    sent[number] = null;
+
+  } // release ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Every frame before the given one has been received, so release them all,
+  * and slide the window past them.
+  *
+  * @param next The number of the first frame not known to be received.
+  */
+  protected void releaseBefore (byte next) {
+
+    while (oldestUnacknowledged != next) {
+      release(oldestUnacknowledged & 0xff);
+      oldestUnacknowledged = (byte)(oldestUnacknowledged + 1);
+    }
+    slideWindow();
+
+  } // releaseBefore ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /** Slide the window past every released frame at its start. */
+  protected void slideWindow () {
+
+    while (oldestUnacknowledged != nextToSend &&
+    sent[oldestUnacknowledged & 0xff] == null) {
+      oldestUnacknowledged = (byte)(oldestUnacknowledged + 1);
+    }
+
+  } // slideWindow ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An entire frame has been received.  A response goes to the subclass.
+  * An intact data frame within the receive window is held in its slot, any
+  * frames newly shown to be missing before it are reported, and then every
+  * frame now in order is delivered.  An old frame sent again means that the
+  * sender has not heard what was delivered, so that is reported again.
+  * Anything damaged is dropped.
+  *
+  * @param data The de-tagged contents extracted from the frame.
+  */
+  protected void finishFrameReceive (ByteRing data) {
+
+    int length = data.size();
+    if (length < headerSize) {
+      return;
+    }
+    byte[] contents = receivedFrame;
+    data.peek(contents, 0, length);
+
+    byte type        = contents[0];
+    byte frameNumber = contents[1];
+    byte frameDest   = contents[2];
+    byte frameSource = contents[3];
+
+    // Frames for other stations, and damaged frames, are dropped.
+    if (frameDest != address && frameDest != BROADCAST) {
+      return;
+    }
+    if (!isFrameIntact()) {
+      return;
+    }
+
+    if (type != 0) {
+      receiveResponse(type, frameNumber, length);
+      return;
+    }
+
+    // A frame before the window was delivered already.  One beyond the
+    // window cannot be a frame in flight.
+    int ahead = (frameNumber - nextExpected) & 0xff;
+    if (ahead >= windowSize) {
+      if (((nextExpected - frameNumber) & 0xff) <= windowSize) {
+        reportDelivered(frameSource);
+      }
+      return;
+    }
+
+    // Hold the frame in its slot, unless a copy of it already is.
+    int slot = (frameNumber & 0xff) & slotMask;
+    if (slotLength[slot] < 0) {
+      slotLength[slot] = length - headerSize;
+      System.arraycopy(contents, headerSize,
+      slots, slot * getFrameSize(), length - headerSize);
+      held += 1;
+    }
+
+    // A frame past any yet seen shows that those between were lost.
+    int seen = (requested - nextExpected) & 0xff;
+    if (ahead >= seen) {
+      if (ahead > seen) {
+        reportMissing(requested, ahead - seen, frameSource);
+      }
+      requested = (byte)(frameNumber + 1);
+    }
+
+    // Deliver every frame now in order.
+    int delivered = 0;
+    slot = (nextExpected & 0xff) & slotMask;
+    while (slotLength[slot] >= 0) {
+      client.receive(slots, slot * getFrameSize(), slotLength[slot]);
+      slotLength[slot] = -1;
+      held            -= 1;
+      delivered       += 1;
+      nextExpected     = (byte)(nextExpected + 1);
+      slot             = (nextExpected & 0xff) & slotMask;
+    }
+
+    receivedData(frameNumber, ahead, delivered, frameSource);
+
+  } // finishFrameReceive ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An intact response frame has arrived.
+  *
+  * @param type        The kind of response.
+  * @param frameNumber The number of the frame it names.
+  * @param length      The length of its contents, which are in
+  *                    <code>receivedFrame</code>.
+  */
+  abstract protected void receiveResponse (byte type,
+  byte frameNumber,
+  int length);
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Tell a sender that has sent an old frame again which frames have been
+  * delivered.
+  *
+  * @param source The station that sent the frame.
+  */
+  abstract protected void reportDelivered (byte source);
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Ask a sender for a run of frames that it sent but that are missing.
+  *
+  * @param first  The number of the first frame missing.
+  * @param count  The number of frames missing.
+  * @param source The station that sent them.
+  */
+  abstract protected void reportMissing (byte first, int count, byte source);
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An intact data frame within the receive window has been held, and every
+  * frame then in order delivered.
+  *
+  * @param frameNumber The number of the frame.
+  * @param ahead       How far past the next frame expected it was.
+  * @param delivered   The number of frames delivered.
+  * @param source      The station that sent it.
+  */
+  abstract protected void receivedData (byte frameNumber,
+  int ahead,
+  int delivered,
+  byte source);
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Ask again for every run of frames missing before the last one received.
+  *
+  * @param source The station that sent them.
+  */
+  protected void reportAllMissing (byte source) {
+
+    int seen  = (requested - nextExpected) & 0xff;
+    int start = -1;
+    for (int i = 0; i <= seen; i += 1) {
+      boolean missing =
+      (i < seen && slotLength[(nextExpected + i) & slotMask] < 0);
+      if (missing && start < 0) {
+        start = i;
+      } else if (!missing && start >= 0) {
+        reportMissing((byte)(nextExpected + start), i - start, source);
+        start = -1;
+      }
+    }
+
+  } // reportAllMissing ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Make the reorder buffer: a ring of slots, one for each frame in the
+  * window, rounded up to a power of two.  The frame numbered n is held in
+  * slot n modulo the number of slots, so every frame in the window has a
+  * slot of its own.
+  */
+  private void createSlots () {
+
+    if (windowSize == 0) {
+      return;
+    }
+    int count = Integer.highestOneBit(windowSize);
+    if (count < windowSize) {
+      count <<= 1;
+    }
+    slotMask   = count - 1;
+    held       = 0;
+    slots      = new byte[count * getFrameSize()];
+    slotLength = new int[count];
+    for (int i = 0; i < count; i += 1) {
+      slotLength[i] = -1;
+    }
+
+  } // createSlots ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  // DATA MEMBERS
+
+  /** The most frames in flight at once. */
+  protected int             windowSize;
+
+  /**
+  * The frames in flight, by number; those not in flight, including those
+  * already released, are <code>null</code>.
+  */
+  protected ByteBuffer[]    sent = new ByteBuffer[SEQUENCE_NUMBERS];
+
+  /** The number of the oldest frame in flight, and of the next to send. */
+  protected byte            oldestUnacknowledged;
+  protected byte            nextToSend;
+
+  /**
+  * The reorder buffer: the data of each frame held, in a slot of
+  * <code>getFrameSize()</code> bytes, and its length, or -1 if the slot is
+  * empty.
+  */
+  private byte[]            slots;
+  private int[]             slotLength;
+  private int               slotMask;
+
+  /** The number of frames held in the reorder buffer. */
+  protected int             held;
+
+  /** The number of the next frame to deliver. */
+  protected byte            nextExpected;
+
+  /**
+  * The number of the frame after every one received; those before it that
+  * are missing have been reported already.
+  */
+  private byte              requested;
+
+  /** The number of frame numbers. */
+  protected static final int SEQUENCE_NUMBERS = 256;
+
+  /**
+  * The largest window: half the number of frame numbers, so that the
+  * windows of the sender and the receiver never overlap.
+  */
+  public static final int   MAX_WINDOW_SIZE  = SEQUENCE_NUMBERS / 2;
+  // =========================================================================
+
+
+
+  // =============================================================================
+} // class ReorderingDataLinkLayer
+// =============================================================================
@@ -0,0 +1,363 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A medium that reproduces, bit for bit, the errors recorded in an earlier
+ * run's <code>WireCapture</code>.  The errors are placed by their offset in
+ * the stream of bits from one client to another, counted from the first bit
+ * that sender ever sent, so a rerun damages exactly the same bits of the
+ * stream even if the data link layer frames it differently.  Nothing is left
+ * to chance, so every rerun over the same capture is identical.
+ *
+ * Each direction between two clients reads the capture with its own
+ * <code>WireCapture.Reader</code>, streaming it from disk in step with the
+ * bits sent, so a capture of any size is replayed in constant memory.
+ *
+ * The capture is named by the system property <code>medium.replay</code>.
+ *
+ * @file   ReplayMedium.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class ReplayMedium extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium that replays the capture named by the system property
+     * <code>medium.replay</code>.
+     *
+     * @throws RuntimeException if the property is not set.
+     */
+    public ReplayMedium () {
+
+	this(System.getProperty("medium.replay"));
+
+    } // ReplayMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium that replays the given capture.
+     *
+     * @param  replayPath The pathname of a finished capture file.
+     * @throws RuntimeException if no capture is given.
+     */
+    public ReplayMedium (String replayPath) {
+
+	if (replayPath == null) {
+	    throw new RuntimeException("ReplayMedium needs -Dmedium.replay=" +
+				       "<capture file>");
+	}
+	this.replayPath = replayPath;
+	this.errors     = new ErrorStream[0][0];
+
+    } // ReplayMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients, flipping it for any
+     * receiver whose copy of it was flipped in the capture.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit The value to be sent, where <code>false</code> sends a
+     *            <code>0</code> bit, and <code>true</code> sends a
+     *            <code>1</code> bit.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, bit);
+	long arrival = arrivalTime(sender, 1);
+
+	// Deliver the bit to each client that is not the sender.
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
+	    ErrorStream stream = errorStream(sender, receiver);
+	    if (stream.nextError() == stream.position) {
+		stream.advance();
+		captureDamage(sender, receiver, bit);
+		deliver(receiver, arrival, !bit);
+	    } else {
+		deliver(receiver, arrival, bit);
+	    }
+	    stream.position += 1;
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one client to the other clients.  Receivers
+     * whose copies were unharmed in the capture share one copy; each other
+     * receiver gets its own, damaged as it was in the capture.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	long bits    = (long)length * BITS_PER_BYTE;
+	long arrival = arrivalTime(sender, bits);
+
+	byte[] cleanData = null;
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
+	    ErrorStream stream = errorStream(sender, receiver);
+	    long        start  = stream.position;
+	    long        end    = start + bits;
+	    if (stream.nextError() >= end) {
+		if (cleanData == null) {
+		    cleanData = Arrays.copyOfRange(data, offset, offset + length);
+		}
+		deliver(receiver, arrival, cleanData);
+	    } else {
+		byte[] noisyData = Arrays.copyOfRange(data,
+						      offset,
+						      offset + length);
+		while (stream.nextError() < end) {
+		    int position = (int)(stream.nextError() - start);
+		    noisyData[position >>> 3] ^=
+			(byte)(0x80 >>> (position & 7));
+		    stream.advance();
+		}
+		captureDamage(sender,
+			      receiver,
+			      data,
+			      offset,
+			      noisyData,
+			      length);
+		deliver(receiver, arrival, noisyData);
+	    }
+	    stream.position = end;
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find the errors for the direction from one client to another, opening
+     * the capture for that direction the first time it is used.
+     *
+     * @param  sender   The client physical layer sending.
+     * @param  receiver The client physical layer receiving.
+     * @return the stream of errors in that direction.
+     */
+    private ErrorStream errorStream (PhysicalLayer sender,
+				     PhysicalLayer receiver) {
+
+	int from = indexOf(sender);
+	int to   = indexOf(receiver);
+
+	// Grow the table of directions as clients register.
+	if (errors.length < clients.length) {
+	    ErrorStream[][] grown = new ErrorStream[clients.length][];
+	    for (int i = 0; i < grown.length; i += 1) {
+		grown[i] = new ErrorStream[clients.length];
+		if (i < errors.length) {
+		    System.arraycopy(errors[i], 0,
+				     grown[i],  0,
+				     errors[i].length);
+		}
+	    }
+	    errors = grown;
+	}
+
+	ErrorStream stream = errors[from][to];
+	if (stream == null) {
+	    stream           = new ErrorStream(replayPath, from, to);
+	    errors[from][to] = stream;
+	}
+	return stream;
+
+    } // errorStream ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The recorded errors in one direction, from one sender to one receiver,
+     * read from the capture only as far as they are needed.  Error positions
+     * are offsets into the stream of bits that the sender has sent.
+     */
+    private static class ErrorStream {
+
+	// =====================================================================
+	private ErrorStream (String path, int sender, int receiver) {
+
+	    this.reader   = new WireCapture.Reader(path);
+	    this.sender   = sender;
+	    this.receiver = receiver;
+
+	} // ErrorStream ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * @return the offset of the next recorded error, or
+	 *         <code>Long.MAX_VALUE</code> if there are no more.
+	 */
+	private long nextError () {
+
+	    // Read on until a flip record for this direction supplies errors,
+	    // counting the sender's bits along the way.
+	    while (reader != null && !hasFlips()) {
+
+		if (!reader.next()) {
+		    reader.close();
+		    reader = null;
+		    break;
+		}
+		flipIndex = 0;
+		if (reader.getKind()   == WireCapture.TRANSMIT &&
+		    reader.getSender() == sender) {
+		    runStart  = sentBits;
+		    sentBits += reader.getBits();
+		}
+
+	    }
+	    if (reader == null) {
+		return Long.MAX_VALUE;
+	    }
+
+	    return runStart + reader.getFlip(flipIndex);
+
+	} // nextError ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * @return whether the current record is a flip record for this
+	 *         direction with flips not yet used.
+	 */
+	private boolean hasFlips () {
+
+	    return (reader.getKind()     == WireCapture.FLIPS &&
+		    reader.getSender()   == sender            &&
+		    reader.getReceiver() == receiver          &&
+		    flipIndex < reader.getFlipCount());
+
+	} // hasFlips ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** Move past the next recorded error. */
+	private void advance () {
+
+	    flipIndex += 1;
+
+	} // advance ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The reader of the capture, or <code>null</code> once exhausted. */
+	private WireCapture.Reader reader;
+
+	/** The positions of this direction's sender and receiver. */
+	private final int          sender;
+	private final int          receiver;
+
+	/** The bits the sender had sent in the capture, so far as read. */
+	private long               sentBits;
+
+	/** Where in the sender's stream the last run read began. */
+	private long               runStart;
+
+	/** The next unused flip of the current record. */
+	private int                flipIndex;
+
+	/** How many bits of the stream have been sent in this run. */
+	private long               position;
+	// =====================================================================
+
+    } // class ErrorStream
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The pathname of the capture being replayed. */
+    private final String    replayPath;
+
+    /** The errors for each direction, indexed by sender and receiver. */
+    private ErrorStream[][] errors;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ReplayMedium
+// =============================================================================
@@ -0,0 +1,415 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A discrete-event scheduler with a virtual clock.  Actions are scheduled to
+ * happen at some simulated time, and running the scheduler performs them in
+ * order of time, advancing the clock to each one as it goes.  Simulated time
+ * is thus entirely decoupled from wall-clock time: an idle stretch of any
+ * length costs nothing to simulate.
+ *
+ * Time is measured in nanoseconds.  Actions scheduled for the same time are
+ * performed in the order in which they were scheduled.
+ *
+ * A scheduler may instead keep real time, for use by a thread that runs its
+ * own event loop.  Its clock is then the wall clock, and
+ * <code>runDue()</code> performs whatever has come due.  Other threads may
+ * hand such a scheduler work with <code>post()</code>.
+ *
+ * @file   Scheduler.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class Scheduler {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a scheduler whose virtual clock starts at zero, with nothing
+     * scheduled.
+     */
+    public Scheduler () {
+
+	this(false);
+
+    } // Scheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a scheduler whose clock starts at zero, with nothing scheduled.
+     *
+     * @param realTime Whether the clock is to follow the wall clock rather
+     *                 than jump from event to event.
+     */
+    public Scheduler (boolean realTime) {
+
+	this.events   = new PriorityQueue<Event>();
+	this.posted   = new ConcurrentLinkedQueue<Runnable>();
+	this.realTime = realTime;
+	this.origin   = System.nanoTime();
+	this.now      = 0;
+
+    } // Scheduler ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the current time, in nanoseconds. */
+    public long now () {
+
+	return (realTime ? System.nanoTime() - origin : now);
+
+    } // now ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Schedule an action to happen some time from now.
+     *
+     * @param  delay  How long from now the action should happen, in
+     *                nanoseconds.
+     * @param  action The action to perform.
+     * @return the scheduled event, which may be cancelled.
+     * @throws RuntimeException if the delay is negative.
+     */
+    public Event schedule (long delay, Runnable action) {
+
+	if (delay < 0) {
+	    throw new RuntimeException("Attempt to schedule in the past");
+	}
+	return scheduleAt(now() + delay, action);
+
+    } // schedule ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Schedule an action to happen at a given time.
+     *
+     * @param  time   When the action should happen, in nanoseconds.
+     * @param  action The action to perform.
+     * @return the scheduled event, which may be cancelled.
+     * @throws RuntimeException if the time has already passed.
+     */
+    public Event scheduleAt (long time, Runnable action) {
+
+	if (time < now && !realTime) {
+	    throw new RuntimeException("Attempt to schedule in the past");
+	}
+	Event event = new Event(time, nextSequence++, action);
+	events.add(event);
+	return event;
+
+    } // scheduleAt ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Hand this scheduler an action to perform as soon as possible.  Unlike
+     * every other method, this one may be called from any thread.
+     *
+     * @param action The action to perform.
+     */
+    public void post (Runnable action) {
+
+	posted.add(action);
+
+    } // post ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform any posted actions, and then the earliest scheduled action that
+     * has not been cancelled, advancing the virtual clock to its time.
+     *
+     * @return <code>true</code> if an action was performed;
+     *         <code>false</code> if nothing remains to be done.
+     */
+    public boolean runNext () {
+
+	boolean ran = runPosted();
+
+	Event event = events.poll();
+	while (event != null && event.cancelled) {
+	    event = events.poll();
+	}
+	if (event == null) {
+	    return ran;
+	}
+
+	if (!realTime) {
+	    now = event.time;
+	}
+	perform(event.action);
+	return true;
+
+    } // runNext ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform any posted actions, and then every scheduled action whose time
+     * has come.  Meant for schedulers that keep real time.
+     *
+     * @return <code>true</code> if any action was performed.
+     */
+    public boolean runDue () {
+
+	boolean ran = runPosted();
+
+	Event event = events.peek();
+	while (event != null && (event.cancelled || event.time <= now())) {
+	    events.poll();
+	    if (!event.cancelled) {
+		perform(event.action);
+		ran = true;
+	    }
+	    event = events.peek();
+	}
+
+	return ran;
+
+    } // runDue ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform scheduled actions, including any that they schedule in turn,
+     * until nothing remains scheduled.
+     */
+    public void run () {
+
+	while (runNext()) {
+	    // Keep going.
+	}
+
+    } // run ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform every action posted so far.
+     *
+     * @return <code>true</code> if any action was performed.
+     */
+    private boolean runPosted () {
+
+	boolean  ran    = false;
+	Runnable action = posted.poll();
+	while (action != null) {
+	    perform(action);
+	    ran    = true;
+	    action = posted.poll();
+	}
+
+	return ran;
+
+    } // runPosted ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform a single action.  Each action runs to completion before the
+     * next begins, so an action may schedule others but never run them
+     * itself.
+     */
+    private void perform (Runnable action) {
+
+	if (running) {
+	    throw new RuntimeException("Scheduler run from within an event");
+	}
+	if (debug) {
+	    System.out.printf("Scheduler.perform(): t = %d ns\n", now());
+	}
+	running = true;
+	try {
+	    action.run();
+	} finally {
+	    running = false;
+	}
+
+    } // perform ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Convert milliseconds into the scheduler's unit of time.
+     *
+     * @param  millis A duration in milliseconds.
+     * @return the same duration in nanoseconds.
+     */
+    public static long millis (long millis) {
+
+	return millis * NANOS_PER_MILLI;
+
+    } // millis ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * An action scheduled to happen at a particular time.
+     */
+    public static class Event implements Comparable<Event> {
+
+	// =====================================================================
+	private Event (long time, long sequence, Runnable action) {
+
+	    this.time     = time;
+	    this.sequence = sequence;
+	    this.action   = action;
+
+	} // Event ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * Prevent the action from happening.  Cancelling an event that has
+	 * already happened does nothing.
+	 */
+	public void cancel () {
+
+	    cancelled = true;
+
+	} // cancel ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the time at which the action is to happen. */
+	public long getTime () {
+
+	    return time;
+
+	} // getTime ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** Order events by time, and then by the order of scheduling. */
+	public int compareTo (Event other) {
+
+	    if (time != other.time) {
+		return (time < other.time ? -1 : 1);
+	    }
+	    return Long.compare(sequence, other.sequence);
+
+	} // compareTo ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** When the action is to happen, in nanoseconds. */
+	private final long     time;
+
+	/** The order in which the event was scheduled. */
+	private final long     sequence;
+
+	/** The action to perform. */
+	private final Runnable action;
+
+	/** Whether the action has been called off. */
+	private boolean        cancelled;
+	// =====================================================================
+
+    } // class Event
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The events yet to happen, earliest first. */
+    private PriorityQueue<Event> events;
+
+    /** Actions handed over by other threads, to be performed next. */
+    private ConcurrentLinkedQueue<Runnable> posted;
+
+    /** Whether the clock follows the wall clock. */
+    private final boolean        realTime;
+
+    /** The wall-clock time at which a real-time clock reads zero. */
+    private final long           origin;
+
+    /** The current virtual time, in nanoseconds. */
+    private long                 now;
+
+    /** The sequence number to give the next event scheduled. */
+    private long                 nextSequence;
+
+    /** Whether an event's action is currently running. */
+    private boolean              running;
+
+    /** The number of nanoseconds in a second. */
+    public static final long     NANOS_PER_SECOND = 1000000000L;
+
+    /** The number of nanoseconds in a millisecond. */
+    public static final long     NANOS_PER_MILLI  = 1000000L;
+
+    /** Whether to emit debugging information. */
+    private static final boolean debug            = false;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Scheduler
+// =============================================================================
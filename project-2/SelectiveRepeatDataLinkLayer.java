@@ -0,0 +1,307 @@
+// =============================================================================
+/**
+* @file   SelectiveRepeatDataLinkLayer.java
+* @author Kyler Kopacz (kkopacz21@amherst.edu)
+* @date   October 2018
+*
+* A data link layer that keeps a window of frames in flight and a reorder
+* buffer, and sends again only the frames that are lost rather than every
+* frame after them (Selective Repeat).  Each frame in flight has its own
+* timer.  A receiver that gets an intact frame out of order holds it,
+* acknowledges that frame alone, and asks with a NAK for each frame that it
+* newly shows to be missing.  While any frame is held, the receiver asks
+* again for every frame still missing each NAK interval, far shorter than
+* the sender's timeout, in case a NAK or the frame sent again was lost too;
+* once the gaps are filled, it repeats its cumulative acknowledgment one
+* interval later, since the sender's window is stalled until it hears it.
+* Frames are handed to the host only in order, and
+* whenever they are, the receiver acknowledges all of them at once with a
+* cumulative acknowledgment of the next frame it expects, so that a lost
+* acknowledgment is made up for by the next.  One damaged frame thus costs
+* one retransmission.
+*/
+public class SelectiveRepeatDataLinkLayer extends ReorderingDataLinkLayer {
+  // =============================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Connect this layer to the physical layer below it, and size its window
+  * as given by the system property <code>dataLinkLayer.window</code>.
+  *
+  * @param physicalLayer The physical layer by which to communicate.
+  */
+  protected void connect (PhysicalLayer physicalLayer) {
+
+    super.connect(physicalLayer);
+    setWindowSize(Integer.getInteger("dataLinkLayer.window",
+    DEFAULT_WINDOW_SIZE));
+    setNakInterval(Long.getLong("dataLinkLayer.nakInterval",
+    Scheduler.millis(DEFAULT_NAK_INTERVAL)));
+
+  } // connect ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Set how often the receiver asks again for frames still missing while it
+  * holds any out of order.  It should be well under the sender's timeout,
+  * but over the time for a frame to be sent again and arrive.
+  *
+  * @param  nakInterval The interval, in nanoseconds of simulated time.
+  * @throws RuntimeException if the interval is not positive.
+  */
+  public void setNakInterval (long nakInterval) {
+
+    if (nakInterval <= 0) {
+      throw new RuntimeException("Invalid NAK interval " + nakInterval);
+    }
+    this.nakInterval = nakInterval;
+
+  } // setNakInterval ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Transmit a frame in flight, and start its timer afresh.
+  *
+  * @param number The frame's number, as an unsigned value.
+  */
+  protected void transmitFrame (int number) {
+
+    if (timers[number] != null) {
+      timers[number].cancel();
+    }
+    transmit(sent[number]);
+    timers[number] = setTimer(Scheduler.millis(TIMEOUT_INTERVAL),
+    timeOut(number));
+
+  } // transmitFrame ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Get the action that sends a frame again when its timer runs out, created
+  * the first time it is needed and reused after that.
+  *
+  * @param  number The frame's number, as an unsigned value.
+  * @return the action.
+  */
+  private Runnable timeOut (int number) {
+
+    if (timeOuts[number] == null) {
+      timeOuts[number] = () -> {
+        recordExchange(sent[number].remaining(), false);
+        transmitFrame(number);
+      };
+    }
+    return timeOuts[number];
+
+  } // timeOut ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * An old frame sent again means that its acknowledgment was lost, so
+  * acknowledge it, and everything else delivered, again.
+  *
+  * @param source The station that sent the frame.
+  */
+  protected void reportDelivered (byte source) {
+
+    sendResponseFrame(CUMULATIVE_ACK, nextExpected, source);
+
+  } // reportDelivered ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * Ask for each frame of a run that is missing with a NAK of its own.
+  *
+  * @param first  The number of the first frame missing.
+  * @param count  The number of frames missing.
+  * @param source The station that sent them.
+  */
+  protected void reportMissing (byte first, int count, byte source) {
+
+    for (int i = 0; i < count; i += 1) {
+      sendNAKFrame((byte)(first + i), source);
+    }
+
+  } // reportMissing ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A data frame has been held and every frame then in order delivered.
+  * Acknowledge a frame out of order alone, or else all of those delivered
+  * at once, and while any frame is still held out of order, keep asking
+  * for those missing until it is not.
+  *
+  * @param frameNumber The number of the frame.
+  * @param ahead       How far past the next frame expected it was.
+  * @param delivered   The number of frames delivered.
+  * @param source      The station that sent it.
+  */
+  protected void receivedData (byte frameNumber,
+  int ahead,
+  int delivered,
+  byte source) {
+
+    if (ahead > 0) {
+      sendACKFrame(frameNumber, source);
+    } else {
+      sendResponseFrame(CUMULATIVE_ACK, nextExpected, source);
+    }
+
+    nakDestination = source;
+    if (held > 0 && nakTimer == null) {
+      nakTimer = setTimer(nakInterval, nakTimeOut);
+    }
+
+  } // receivedData ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * The NAK interval has passed since frames were held out of order.  If
+  * any still are, ask again for every frame missing before the last of
+  * them, in case the NAKs, or the frames sent again, were lost, and keep
+  * doing so while any are held.  If none are, the gaps have been filled, so
+  * acknowledge everything delivered once more, in case the acknowledgment
+  * that the sender's stalled window waits on was lost.
+  */
+  private void resendNAKs () {
+
+    nakTimer = null;
+    if (held == 0) {
+      sendResponseFrame(CUMULATIVE_ACK, nextExpected, nakDestination);
+      return;
+    }
+    reportAllMissing(nakDestination);
+    nakTimer = setTimer(nakInterval, nakTimeOut);
+
+  } // resendNAKs ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A response has arrived.  An acknowledgment releases the frame it names,
+  * and a cumulative acknowledgment every frame before the one it names.
+  * Either slides the window past every acknowledged frame at its start.  A
+  * rejection has the frame it names, alone, sent again.  A response about
+  * frames not in flight, or of the wrong length, is ignored.
+  *
+  * @param type        The kind of response.
+  * @param frameNumber The number of the frame it names.
+  * @param length      The length of its contents.
+  */
+  protected void receiveResponse (byte type, byte frameNumber, int length) {
+
+    if ((type != ACK && type != NAK && type != CUMULATIVE_ACK) ||
+    length != headerSize) {
+      return;
+    }
+
+    int inFlight = getFramesInFlight();
+    int offset   = (frameNumber - oldestUnacknowledged) & 0xff;
+
+    if (type == CUMULATIVE_ACK) {
+      if (offset > inFlight) {
+        return;
+      }
+      releaseBefore(frameNumber);
+    } else {
+      int number = frameNumber & 0xff;
+      if (offset >= inFlight || sent[number] == null) {
+        return;
+      }
+      if (type == NAK) {
+        recordExchange(sent[number].remaining(), false);
+        transmitFrame(number);
+        return;
+      }
+      release(number);
+      slideWindow();
+    }
+
+    fillWindow();
+
+  } // receiveResponse ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  /**
+  * A frame in flight has been acknowledged, so stop its timer and free its
+  * buffer.  A frame already acknowledged is left alone.
+  *
+  * @param number The frame's number, as an unsigned value.
+  */
+  protected void release (int number) {
+
+    if (timers[number] != null) {
+      timers[number].cancel();
+      timers[number] = null;
+    }
+    super.release(number);
+
+  } // release ()
+  // =========================================================================
+
+
+
+  // =========================================================================
+  // DATA MEMBERS
+
+  /** The timer on each frame in flight, and what each does. */
+  private Scheduler.Event[] timers   = new Scheduler.Event[SEQUENCE_NUMBERS];
+  private Runnable[]        timeOuts = new Runnable[SEQUENCE_NUMBERS];
+
+  /**
+  * How often frames still missing are asked for again, in nanoseconds, the
+  * timer that does so, and what it does.
+  */
+  private long              nakInterval;
+  private Scheduler.Event   nakTimer;
+  private final Runnable    nakTimeOut = () -> resendNAKs();
+
+  /** The station from which frames held out of order came. */
+  private byte              nakDestination;
+
+  /**
+  * The status of a response that acknowledges every frame before the one it
+  * names.
+  */
+  private static final byte CUMULATIVE_ACK     = (byte) 0b00010010;
+
+  /** The window size used unless another is given. */
+  public static final int   DEFAULT_WINDOW_SIZE = 8;
+
+  /** The NAK interval used unless another is given, in milliseconds. */
+  public static final long  DEFAULT_NAK_INTERVAL = 5;
+  // =========================================================================
+
+
+
+  // =============================================================================
+} // class SelectiveRepeatDataLinkLayer
+// =============================================================================
@@ -6,6 +6,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 // =============================================================================
@@ -42,6 +43,46 @@ public class Simulator {
 			       "<medium type> "          +
 			       "<data link layer type> " +
 			       "<transmission data file>");
+	    System.err.println("Media accept -Dmedium.bitRate=<b/s> and " +
+			       "-Dmedium.propagationDelay=<ns>");
+	    System.err.println("Noisy media accept -Dmedium.errorProbability=" +
+			       "<p> and -Dmedium.seed=<n>");
+	    System.err.println("Any medium accepts -Dmedium.capture=<file>; " +
+			       "see WireCapture to export it to pcap");
+	    System.err.println("The Replay medium takes -Dmedium.replay=" +
+			       "<capture file>");
+	    System.err.println("The Slip medium takes -Dmedium.dropProbability=" +
+			       "<p> and -Dmedium.insertProbability=<p>");
+	    System.err.println("Physical layers line-code bits with " +
+			       "-DphysicalLayer.lineCoding=<Manchester|" +
+			       "FourBFiveB>");
+	    System.err.println("Data link layers resynchronize after slips " +
+			       "with -DdataLinkLayer.resync=true");
+	    System.err.println("Data link layers frame -DdataLinkLayer." +
+			       "frameSize=<bytes>, fewer as errors warrant " +
+			       "with -DdataLinkLayer.adaptive=true");
+	    System.err.println("CRC data link layers check frames with " +
+			       "-DdataLinkLayer.checksum=<CRC8|CRC16|CRC32|" +
+			       "CRC32C>");
+	    System.err.println("The GoBackN and SelectiveRepeat data link " +
+			       "layers keep -DdataLinkLayer.window=<frames> " +
+			       "in flight, asking again for a lost frame " +
+			       "every -DdataLinkLayer.nakInterval=<ns>");
+	    System.err.println("The NakOnly data link layer streams, keeping " +
+			       "-DdataLinkLayer.window=<frames> to send " +
+			       "again, and reports its status every " +
+			       "-DdataLinkLayer.statusEvery=<frames> or " +
+			       "-DdataLinkLayer.statusInterval=<ns>");
+	    System.err.println("-Dsimulator.segments=<n> joins n media with " +
+			       "a Bridge (-Dbridge.agingTime=<ms>)");
+	    System.err.println("-Dsimulator.hosts=<n> has n/2 pairs of hosts " +
+			       "send at once (try the CsmaCd medium, which " +
+			       "pairs them, for up to 1000 hosts)");
+	    System.err.println("-Dsimulator.bidirectional=true has both " +
+			       "hosts send to each other at once (GoBackN " +
+			       "acknowledges on data frames, or on its own " +
+			       "after -DdataLinkLayer.ackDelay=<ns>, two " +
+			       "frame times by default)");
 	    System.exit(1);
 
 	}
@@ -51,22 +92,94 @@ public class Simulator {
 	String dataLinkLayerType = args[1];
 	String transmissionPath  = args[2];
 
-	// Create the medium, then the sender and receiver.
-	Medium medium   = Medium.create(mediumType);
-	Host   sender   = new Host(medium, dataLinkLayerType);
-	Host   receiver = new Host(medium, dataLinkLayerType);
+	// Create the media: one, or several segments joined by a bridge.
+	int      segmentCount = Integer.getInteger("simulator.segments", 1);
+	Medium[] segments     = new Medium[segmentCount];
+	for (int i = 0; i < segmentCount; i += 1) {
+	    segments[i] = Medium.create(mediumType);
+	    captureTraffic(segments[i], (segmentCount == 1 ? "" : "." + i));
+	}
+	Bridge   bridge       = null;
+	if (segmentCount > 1) {
+	    bridge = new Bridge(segments);
+	}
 
 	// Read the contents of the data to be transmitted into a buffer.
 	byte[] dataToTransmit = readFile(transmissionPath);
 
+	// Create the sender and receiver, at either end of the network, with
+	// the sender addressing the receiver.
+	// In a two-way run, the receiver sends the same data back at once.
+	int     hostCount     = Integer.getInteger("simulator.hosts", 2);
+	boolean bidirectional = Boolean.getBoolean("simulator.bidirectional");
+	Medium  medium        = segments[0];
+	Host    sender        = null;
+	Host    receiver      = null;
+	if (hostCount == 2) {
+	    sender   = new Host(medium, dataLinkLayerType);
+	    receiver = new Host(segments[segmentCount - 1], dataLinkLayerType);
+	    sender.setDestination(receiver.getAddress());
+	    if (bidirectional) {
+		receiver.setDestination(sender.getAddress());
+	    }
+	}
+
 	// Perform the simulation!
-	simulate(sender, receiver, dataToTransmit);
+	if (hostCount != 2) {
+	    simulateContention(segments,
+			       hostCount,
+			       dataLinkLayerType,
+			       dataToTransmit);
+	} else if (medium instanceof DuplexMedium) {
+	    simulateThreaded((DuplexMedium)medium,
+			     sender,
+			     receiver,
+			     dataToTransmit);
+	} else if (bidirectional) {
+	    simulateBidirectional(medium, sender, receiver, dataToTransmit);
+	} else {
+	    simulate(medium, sender, receiver, dataToTransmit);
+	}
+	if (bridge != null) {
+	    System.out.printf("Bridge:                 %d forwarded, " +
+			      "%d flooded, %d dropped\n",
+			      bridge.getForwarded(),
+			      bridge.getFlooded(),
+			      bridge.getDropped());
+	}
+
+	// Finish the capture of the traffic, if there is one.
+	for (Medium segment : segments) {
+	    if (segment.getCapture() != null) {
+		segment.getCapture().close();
+	    }
+	}
 
     } // main
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * Capture a medium's traffic if the system property
+     * <code>medium.capture</code> names a file.
+     *
+     * @param medium The medium whose traffic to capture.
+     * @param suffix What to add to the file's name, to tell segments apart.
+     */
+    private static void captureTraffic (Medium medium, String suffix) {
+
+	String path = System.getProperty("medium.capture");
+	if (path != null) {
+	    medium.setCapture(new WireCapture(path + suffix));
+	}
+
+    } // captureTraffic ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Read the whole contents of a given file, returning it in a byte array.
@@ -108,25 +221,284 @@ public class Simulator {
     /**
      * Perform the simulation, having the sender transmit the given data to the
      * receiver.  Verify that the receiver fully receives the complete and
-     * correct data.
+     * correct data, and report how long that took in simulated time.
      *
+     * @param medium   The medium connecting the hosts.
      * @param sender   The sending host.
      * @param receiver The receiving host.
      * @param data     The data to be sent.
      */
-    private static void simulate (Host sender, Host receiver, byte[] data) {
+    private static void simulate (Medium medium,
+				  Host   sender,
+				  Host   receiver,
+				  byte[] data) {
 
+	// Hand the data to the sender, and then run the simulation until
+	// nothing remains to happen.
+	Scheduler scheduler = medium.getScheduler();
+	long      wallStart = System.nanoTime();
 	sender.send(data);
+	scheduler.run();
+	long      wallTime  = System.nanoTime() - wallStart;
+
 	byte[] received = receiver.retrieve();
 	System.out.println("Transmission received:  " + new String(received));
 	System.out.println("Transmission succeeded: " +
 			   Arrays.equals(data, received));
 
+	// Report the throughput in bits of data per simulated second.
+	double simulatedSeconds =
+	    (double)scheduler.now() / Scheduler.NANOS_PER_SECOND;
+	double wallSeconds      = (double)wallTime / Scheduler.NANOS_PER_SECOND;
+	System.out.printf("Simulated time:         %.6f s\n", simulatedSeconds);
+	System.out.printf("Throughput:             %.0f b/s\n",
+			  received.length * 8 / simulatedSeconds);
+	System.out.printf("Wall-clock time:        %.6f s (%.1fx real time)\n",
+			  wallSeconds,
+			  simulatedSeconds / wallSeconds);
+
+	// Report the receiver's acknowledgment traffic, for layers that have
+	// any.
+	if (receiver.getDataLinkLayer() instanceof CRCDataLinkLayer) {
+	    System.out.printf("Acknowledgments:        %d response frames\n",
+			      ((CRCDataLinkLayer)receiver.getDataLinkLayer()).
+			      getResponseFramesSent());
+	}
+
+	// Report what the sender's frames adapted to, if they did.
+	DataLinkLayer dataLinkLayer = sender.getDataLinkLayer();
+	if (dataLinkLayer.isAdaptive()) {
+	    System.out.printf("Frame size:             %d of %d bytes\n",
+			      dataLinkLayer.getCurrentFrameSize(),
+			      dataLinkLayer.getFrameSize());
+	}
+
     } // simulate()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * Perform the simulation with both hosts sending the given data to each
+     * other at once.  Verify that each fully receives the other's data, and
+     * report how long that took in simulated time, and how many response
+     * frames were sent, and how many acknowledgments rode on data frames
+     * instead.
+     *
+     * @param medium The medium connecting the hosts.
+     * @param first  One host.
+     * @param second The other host.
+     * @param data   The data to be sent each way.
+     */
+    private static void simulateBidirectional (Medium medium,
+					       Host   first,
+					       Host   second,
+					       byte[] data) {
+
+	Scheduler scheduler = medium.getScheduler();
+	long      wallStart = System.nanoTime();
+	first.send(data);
+	second.send(data);
+	scheduler.run();
+	long      wallTime  = System.nanoTime() - wallStart;
+
+	boolean succeeded = (Arrays.equals(data, second.retrieve()) &&
+			     Arrays.equals(data, first.retrieve()));
+	System.out.println("Transmission succeeded: " + succeeded);
+
+	// Report the throughput of both ways together.
+	double simulatedSeconds =
+	    (double)scheduler.now() / Scheduler.NANOS_PER_SECOND;
+	double wallSeconds      = (double)wallTime / Scheduler.NANOS_PER_SECOND;
+	System.out.printf("Simulated time:         %.6f s\n", simulatedSeconds);
+	System.out.printf("Aggregate throughput:   %.0f b/s\n",
+			  2 * data.length * 8 / simulatedSeconds);
+	System.out.printf("Wall-clock time:        %.6f s\n", wallSeconds);
+
+	// Report the acknowledgment traffic, for layers that have any.
+	long responses  = 0;
+	long piggybacks = 0;
+	for (Host host : new Host[] { first, second }) {
+	    DataLinkLayer dataLinkLayer = host.getDataLinkLayer();
+	    if (dataLinkLayer instanceof CRCDataLinkLayer) {
+		responses  +=
+		    ((CRCDataLinkLayer)dataLinkLayer).getResponseFramesSent();
+	    }
+	    if (dataLinkLayer instanceof GoBackNDataLinkLayer) {
+		piggybacks +=
+		    ((GoBackNDataLinkLayer)dataLinkLayer).getPiggybackedAcks();
+	    }
+	}
+	System.out.printf("Acknowledgments:        %d response frames, " +
+			  "%d piggybacked\n",
+			  responses,
+			  piggybacks);
+
+    } // simulateBidirectional()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform the transfer over a threaded duplex medium, on which each host
+     * runs on its own thread in real time.  The sender is handed the data on
+     * its own thread, and then asked, also on its own thread, whether it has
+     * finished, until it has.
+     *
+     * @param medium   The medium connecting the hosts.
+     * @param sender   The sending host.
+     * @param receiver The receiving host.
+     * @param data     The data to be sent.
+     */
+    private static void simulateThreaded (DuplexMedium medium,
+					  Host         sender,
+					  Host         receiver,
+					  byte[]       data) {
+
+	Scheduler senderScheduler = sender.getScheduler();
+	long      wallStart       = System.nanoTime();
+	medium.start();
+	senderScheduler.post(() -> sender.send(data));
+	while (!CompletableFuture.supplyAsync(sender::isIdle,
+					      senderScheduler::post).join()) {
+	    try {
+		Thread.sleep(1);
+	    } catch (InterruptedException e) {
+		throw new RuntimeException("Interrupted awaiting the sender");
+	    }
+	}
+	medium.stop();
+	long      wallTime        = System.nanoTime() - wallStart;
+
+	byte[] received = receiver.retrieve();
+	System.out.println("Transmission received:  " + new String(received));
+	System.out.println("Transmission succeeded: " +
+			   Arrays.equals(data, received));
+
+	// Report the throughput in bits of data per real second.
+	double wallSeconds = (double)wallTime / Scheduler.NANOS_PER_SECOND;
+	System.out.printf("Wall-clock time:        %.6f s\n", wallSeconds);
+	System.out.printf("Throughput:             %.0f b/s\n",
+			  received.length * 8 / wallSeconds);
+	System.out.printf("Bytes dropped:          %d\n",
+			  medium.getDroppedBytes());
+
+    } // simulateThreaded()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform the transfer between many pairs of hosts at once, all contending
+     * for the network.  The hosts are spread in turn over the segments, and
+     * each even-numbered host sends the data to the host after it.  Report the
+     * aggregate throughput, and how fairly the pairs shared the network by
+     * Jain's index over their throughputs: (sum x)^2 / (n * sum x^2), which is
+     * 1 when every pair fares the same and 1/n when one pair takes it all.
+     *
+     * On a single CSMA/CD medium, each pair is joined on the medium, so that
+     * its frames reach its partner alone, and its hosts' addresses need only
+     * differ from each other.  There can then be more hosts than there are
+     * host addresses; otherwise every host needs an address of its own.
+     *
+     * @param  segments          The media making up the network.
+     * @param  hostCount         The number of hosts.
+     * @param  dataLinkLayerType The kind of data link layer the hosts use.
+     * @param  data              The data each pair is to send.
+     * @throws RuntimeException if the number of hosts is not even, or there
+     *                          are more than there are host addresses on a
+     *                          network whose hosts are not paired.
+     */
+    private static void simulateContention (Medium[] segments,
+					    int      hostCount,
+					    String   dataLinkLayerType,
+					    byte[]   data) {
+
+	int     addresses = DataLinkLayer.BROADCAST & 0xff;
+	boolean paired    = (segments.length == 1 &&
+			     segments[0] instanceof CsmaCdMedium);
+	if (hostCount < 2                           ||
+	    hostCount % 2 != 0                      ||
+	    (hostCount > addresses && !paired)) {
+	    throw new RuntimeException("Invalid number of hosts " + hostCount);
+	}
+
+	// Paired hosts take the addresses in turn, starting over once they
+	// run out; with an even number of them, the two hosts of a pair always
+	// differ.
+	Host[] hosts = new Host[hostCount];
+	for (int i = 0; i < hostCount; i += 1) {
+	    hosts[i] = (paired
+			? new Host(segments[0],
+				   dataLinkLayerType,
+				   (byte)(i % (addresses - 1)))
+			: new Host(segments[i % segments.length],
+				   dataLinkLayerType));
+	}
+	for (int i = 0; i < hostCount; i += 2) {
+	    hosts[i].setDestination(hosts[i + 1].getAddress());
+	    if (paired) {
+		((CsmaCdMedium)segments[0]).pair(hosts[i].getPhysicalLayer(),
+						 hosts[i + 1].getPhysicalLayer());
+	    }
+	}
+
+	Scheduler scheduler = segments[0].getScheduler();
+	long      wallStart = System.nanoTime();
+	for (int i = 0; i < hostCount; i += 2) {
+	    hosts[i].send(data);
+	}
+	scheduler.run();
+	long      wallTime  = System.nanoTime() - wallStart;
+
+	// Tally each pair's throughput over the time its transfer took.
+	int    pairs     = hostCount / 2;
+	int    succeeded = 0;
+	long   finish    = 0;
+	double sum       = 0.0;
+	double sumSquare = 0.0;
+	for (int i = 1; i < hostCount; i += 2) {
+	    byte[] received = hosts[i].retrieve();
+	    if (Arrays.equals(data, received)) {
+		succeeded += 1;
+	    }
+	    long   time       = hosts[i].getLastReceiveTime();
+	    double throughput = (time == 0
+				 ? 0.0
+				 : received.length * 8.0 *
+				   Scheduler.NANOS_PER_SECOND / time);
+	    finish     = Math.max(finish, time);
+	    sum       += throughput;
+	    sumSquare += throughput * throughput;
+	}
+
+	double simulatedSeconds = (double)finish / Scheduler.NANOS_PER_SECOND;
+	double wallSeconds      = (double)wallTime / Scheduler.NANOS_PER_SECOND;
+	System.out.printf("Transfers succeeded:    %d of %d\n", succeeded, pairs);
+	System.out.printf("Simulated time:         %.6f s\n", simulatedSeconds);
+	System.out.printf("Aggregate throughput:   %.0f b/s\n",
+			  (double)pairs * data.length * 8 / simulatedSeconds);
+	System.out.printf("Fairness (Jain):        %.4f\n",
+			  (sumSquare == 0.0 ? 0.0 : sum * sum / (pairs * sumSquare)));
+	System.out.printf("Wall-clock time:        %.6f s\n", wallSeconds);
+	for (Medium segment : segments) {
+	    if (segment instanceof CsmaCdMedium) {
+		CsmaCdMedium csmaCd = (CsmaCdMedium)segment;
+		System.out.printf("Medium:                 %d sent, " +
+				  "%d collided\n",
+				  csmaCd.getSuccesses(),
+				  csmaCd.getCollisions());
+	    }
+	}
+
+    } // simulateContention()
+    // =========================================================================
+
+
+
 // =============================================================================
 } // class Simulator
 // =============================================================================
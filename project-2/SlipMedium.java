@@ -0,0 +1,248 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A medium whose receivers' clocks slip: now and then a bit is lost on its
+ * way to a receiver, and now and then a bit is seen twice.  No bit is ever
+ * flipped, but every byte after a slip is misaligned unless the receiver
+ * resynchronizes (see <code>DataLinkLayer.setResynchronizing()</code>).
+ *
+ * Slips are placed the way <code>NoiseEngine</code> places bit errors, by
+ * drawing the distance to the next one, so a run of bytes with no slip in it
+ * costs no more than it would on a perfect medium.  The rates are taken from
+ * the system properties <code>medium.dropProbability</code> and
+ * <code>medium.insertProbability</code>, reproducibly if
+ * <code>medium.seed</code> is given.
+ *
+ * @file   SlipMedium.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class SlipMedium extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium configured by the system properties described above.
+     * Without a seed, slips are not reproducible.
+     */
+    public SlipMedium () {
+
+	double dropProbability   =
+	    Double.parseDouble(System.getProperty("medium.dropProbability",
+						  "" + DEFAULT_SLIP_PROBABILITY));
+	double insertProbability =
+	    Double.parseDouble(System.getProperty("medium.insertProbability",
+						  "" + DEFAULT_SLIP_PROBABILITY));
+	Long   seed              = Long.getLong("medium.seed");
+	drops   = (seed == null
+		   ? new NoiseEngine(dropProbability)
+		   : new NoiseEngine(dropProbability, seed));
+	inserts = (seed == null
+		   ? new NoiseEngine(insertProbability)
+		   : new NoiseEngine(insertProbability, seed + 1));
+
+    } // SlipMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium whose slips are reproducible from the given seed.
+     *
+     * @param dropProbability   The probability that any one bit is lost.
+     * @param insertProbability The probability that any one bit is doubled.
+     * @param seed              The seed for the medium's random numbers.
+     */
+    public SlipMedium (double dropProbability,
+		       double insertProbability,
+		       long   seed) {
+
+	drops   = new NoiseEngine(dropProbability,   seed);
+	inserts = new NoiseEngine(insertProbability, seed + 1);
+
+    } // SlipMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients, each of which may lose
+     * it or see it twice.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit The value to be sent, where <code>false</code> sends a
+     *            <code>0</code> bit, and <code>true</code> sends a
+     *            <code>1</code> bit.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, bit);
+	long arrival = arrivalTime(sender, 1);
+
+	// Deliver the bit to each client that is not the sender.
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
+	    boolean dropped  = drops.nextBitFlips();
+	    boolean inserted = inserts.nextBitFlips();
+	    if (inserted) {
+		deliver(receiver, arrival, bit);
+	    }
+	    if (!dropped) {
+		deliver(receiver, arrival, bit);
+	    }
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one client to the other clients.  Receivers
+     * whose copies have no slip in them share one copy; each other receiver
+     * gets its own, which may no longer be a whole number of bytes.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param data   The buffer holding the bytes to send.
+     * @param offset The index of the first byte to send.
+     * @param length The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender,
+			  byte[]        data,
+			  int           offset,
+			  int           length) {
+
+	// Only registered clients may send.
+	checkSender(sender);
+	capture(sender, data, offset, length);
+	long bits    = (long)length * BITS_PER_BYTE;
+	long arrival = arrivalTime(sender, bits);
+
+	byte[] cleanData = null;
+	for (PhysicalLayer receiver : clients) {
+
+	    if (receiver == sender) {
+		continue;
+	    }
+
+	    if (drops.bitsUntilError() >= bits &&
+		inserts.bitsUntilError() >= bits) {
+		drops.skip(length);
+		inserts.skip(length);
+		if (cleanData == null) {
+		    cleanData = Arrays.copyOfRange(data, offset, offset + length);
+		}
+		deliver(receiver, arrival, cleanData);
+	    } else {
+		slip(receiver, arrival, data, offset, length);
+	    }
+
+	}
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Deliver a copy of a run of bytes with a slip somewhere in it, walking
+     * the run bit by bit to lose or double bits as the engines dictate.
+     *
+     * @param receiver The client physical layer to receive the copy.
+     * @param arrival  The simulated time at which the copy arrives.
+     * @param data     The buffer holding the bytes sent.
+     * @param offset   The index of the first byte sent.
+     * @param length   The number of bytes sent.
+     */
+    private void slip (PhysicalLayer receiver,
+		       long          arrival,
+		       byte[]        data,
+		       int           offset,
+		       int           length) {
+
+	// At worst, every bit is doubled.
+	byte[] slipped = new byte[2 * length];
+	int    count   = 0;
+	for (int i = 0; i < length * BITS_PER_BYTE; i += 1) {
+
+	    int     bit      = (data[offset + (i >>> 3)] >>> (7 - (i & 7))) & 1;
+	    boolean dropped  = drops.nextBitFlips();
+	    boolean inserted = inserts.nextBitFlips();
+	    int     copies   = (dropped ? 0 : 1) + (inserted ? 1 : 0);
+	    for (int j = 0; j < copies; j += 1) {
+		slipped[count >>> 3] |= (byte)(bit << (7 - (count & 7)));
+		count += 1;
+	    }
+
+	}
+
+	if (debug) {
+	    System.out.printf("SlipMedium.slip(): %d bits became %d\n",
+			      length * BITS_PER_BYTE,
+			      count);
+	}
+	deliver(receiver,
+		arrival,
+		Arrays.copyOf(slipped, (count + BITS_PER_BYTE - 1) /
+				       BITS_PER_BYTE),
+		count);
+
+    } // slip ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The default probability that a bit is lost, or doubled. */
+    public static final double DEFAULT_SLIP_PROBABILITY = 0.0001;
+
+    /** The source of lost bits. */
+    private NoiseEngine drops;
+
+    /** The source of doubled bits. */
+    private NoiseEngine inserts;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class SlipMedium
+// =============================================================================
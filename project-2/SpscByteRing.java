@@ -0,0 +1,170 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.concurrent.atomic.AtomicLong;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A bounded, lock-free ring of bytes that carries data from exactly one
+ * producer thread to exactly one consumer thread.
+ *
+ * Each side owns one counter: the producer advances <code>tail</code> once a
+ * run of bytes is in place, and the consumer advances <code>head</code> once
+ * it has copied bytes out.  Each side publishes its counter with an ordered
+ * (lazy) write and keeps a cached copy of the other side's counter, which it
+ * re-reads only when the cached copy says the ring is full (or empty).  No
+ * locks are taken and nothing is allocated after construction.
+ *
+ * @file   SpscByteRing.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class SpscByteRing {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an empty ring.
+     *
+     * @param  capacity The minimum number of bytes the ring can hold; it is
+     *                  rounded up to a power of two.
+     * @throws RuntimeException if the capacity is not positive or is too
+     *                          large.
+     */
+    public SpscByteRing (int capacity) {
+
+	if (capacity <= 0 || capacity > (1 << 30)) {
+	    throw new RuntimeException("Invalid ring capacity " + capacity);
+	}
+	int size = Integer.highestOneBit(capacity);
+	if (size < capacity) {
+	    size <<= 1;
+	}
+	buffer = new byte[size];
+	mask   = size - 1;
+
+    } // SpscByteRing ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes the ring can hold. */
+    public int capacity () {
+
+	return buffer.length;
+
+    } // capacity ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a run of bytes to the ring, entirely or not at all.  Called only by
+     * the producer thread.
+     *
+     * @param  data   The buffer holding the bytes to add.
+     * @param  offset The index of the first byte.
+     * @param  length The number of bytes.
+     * @return <code>true</code> if the bytes were added; <code>false</code> if
+     *         there was not room for all of them.
+     */
+    public boolean offer (byte[] data, int offset, int length) {
+
+	long t = tail.get();
+	if (t + length - cachedHead > buffer.length) {
+	    cachedHead = head.get();
+	    if (t + length - cachedHead > buffer.length) {
+		return false;
+	    }
+	}
+
+	// Copy in two pieces if the run wraps around the end of the buffer.
+	int start = (int)(t & mask);
+	int first = Math.min(length, buffer.length - start);
+	System.arraycopy(data, offset, buffer, start, first);
+	System.arraycopy(data, offset + first, buffer, 0, length - first);
+
+	// Publish the bytes only once they are in place.
+	tail.lazySet(t + length);
+	return true;
+
+    } // offer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove as many bytes as are available, up to a limit.  Called only by
+     * the consumer thread.
+     *
+     * @param  into   The buffer into which to copy the bytes.
+     * @param  offset The index at which to place the first byte.
+     * @param  length The most bytes to remove.
+     * @return the number of bytes removed, which is zero if the ring is empty.
+     */
+    public int poll (byte[] into, int offset, int length) {
+
+	long h = head.get();
+	if (h == cachedTail) {
+	    cachedTail = tail.get();
+	    if (h == cachedTail) {
+		return 0;
+	    }
+	}
+
+	int count = (int)Math.min(length, cachedTail - h);
+	int start = (int)(h & mask);
+	int first = Math.min(count, buffer.length - start);
+	System.arraycopy(buffer, start, into, offset, first);
+	System.arraycopy(buffer, 0, into, offset + first, count - first);
+
+	// Free the space only once the bytes are copied out.
+	head.lazySet(h + count);
+	return count;
+
+    } // poll ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The storage, whose length is a power of two. */
+    private final byte[]     buffer;
+
+    /** The mask that turns a counter into an index into the storage. */
+    private final int        mask;
+
+    /** The total number of bytes ever removed; written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** The total number of bytes ever added; written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The producer's last look at <code>head</code>. */
+    private long             cachedHead;
+
+    /** The consumer's last look at <code>tail</code>. */
+    private long             cachedTail;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class SpscByteRing
+// =============================================================================
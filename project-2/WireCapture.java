@@ -0,0 +1,658 @@
+// =============================================================================
+// IMPORTS
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A record of everything that crosses a medium, appended to a memory-mapped
+ * file.  Each run of bits a sender transmits is recorded once, with the
+ * simulated time and the sender; each copy of a run that noise damaged on its
+ * way to a receiver is recorded as the positions of the flipped bits.
+ *
+ * Recording is a copy into a mapped region of the file, with no system call
+ * and no allocation; the file grows a large chunk at a time.  A capture may
+ * be read back, record by record, with a <code>WireCapture.Reader</code>, and
+ * turned into a pcap file (link type <code>USER0</code>) with
+ * <code>exportPcap()</code>, or from the command line:
+ *
+ * <pre>    java WireCapture &lt;capture file&gt; &lt;pcap file&gt;</pre>
+ *
+ * The capture file is a header (the magic number and a version, as two
+ * ints) followed by records, all big-endian.  A transmit record is the byte
+ * <code>TRANSMIT</code>, the time (long, ns), the sender (int), the length
+ * in bits (int) and the bytes that hold those bits.  A flip record is the
+ * byte <code>FLIPS</code>, the time, the sender, the receiver (int), the
+ * number of flipped bits (int), and the position of each (int), counted from
+ * the first bit of the transmit record just before it from the same sender.
+ *
+ * @file   WireCapture.java
+ * @author Kyler Kopacz (kkopacz21@amherst.edu)
+ * @date   October 2018
+ */
+public class WireCapture {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a capture file, replacing any file already at the path.
+     *
+     * @param  path The pathname of the capture file.
+     * @throws RuntimeException if the file cannot be created.
+     */
+    public WireCapture (String path) {
+
+	this.path = path;
+	try {
+	    RandomAccessFile file = new RandomAccessFile(path, "rw");
+	    file.setLength(0);
+	    channel = file.getChannel();
+	} catch (IOException e) {
+	    throw new RuntimeException("Could not create capture " + path);
+	}
+
+	map(0, CHUNK_SIZE);
+	buffer.putInt(MAGIC);
+	buffer.putInt(VERSION);
+
+    } // WireCapture ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record a run of bits put onto the medium.
+     *
+     * @param time   The simulated time at which the sender sent the bits.
+     * @param sender The position of the sender among the medium's clients.
+     * @param data   The buffer holding the bits, most significant first.
+     * @param offset The index of the byte holding the first bit.
+     * @param bits   The number of bits.
+     */
+    public synchronized void recordTransmit (long   time,
+					     int    sender,
+					     byte[] data,
+					     int    offset,
+					     int    bits) {
+
+	int length = (bits + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+	reserve(TRANSMIT_HEADER_SIZE + length);
+	buffer.put(TRANSMIT);
+	buffer.putLong(time);
+	buffer.putInt(sender);
+	buffer.putInt(bits);
+	buffer.put(data, offset, length);
+
+    } // recordTransmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record the bits that noise flipped in one receiver's copy of a run.
+     * Meant to be called only for damaged copies, which are rare, so the
+     * flipped bits are found by comparing the copy with what was sent.
+     *
+     * @param time     The simulated time at which the sender sent the bits.
+     * @param sender   The position of the sender among the medium's clients.
+     * @param receiver The position of the receiver.
+     * @param sent     The buffer holding the bytes as sent.
+     * @param offset   The index of the first byte sent.
+     * @param received The receiver's copy of the bytes, from index 0.
+     * @param length   The number of bytes.
+     */
+    public synchronized void recordFlips (long   time,
+					  int    sender,
+					  int    receiver,
+					  byte[] sent,
+					  int    offset,
+					  byte[] received,
+					  int    length) {
+
+	int count = 0;
+	for (int i = 0; i < length; i += 1) {
+	    count += Integer.bitCount((sent[offset + i] ^ received[i]) & 0xff);
+	}
+	if (count == 0) {
+	    return;
+	}
+
+	reserve(FLIPS_HEADER_SIZE + count * 4);
+	buffer.put(FLIPS);
+	buffer.putLong(time);
+	buffer.putInt(sender);
+	buffer.putInt(receiver);
+	buffer.putInt(count);
+	for (int i = 0; i < length; i += 1) {
+	    int difference = (sent[offset + i] ^ received[i]) & 0xff;
+	    for (int j = 0; j < BITS_PER_BYTE; j += 1) {
+		if ((difference & (0x80 >>> j)) != 0) {
+		    buffer.putInt(i * BITS_PER_BYTE + j);
+		}
+	    }
+	}
+
+    } // recordFlips ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Finish the capture, trimming the file to what was recorded.
+     *
+     * @throws RuntimeException if the file cannot be finished.
+     */
+    public synchronized void close () {
+
+	if (channel == null) {
+	    return;
+	}
+	long end = base + buffer.position();
+	buffer.force();
+	buffer = null;
+	try {
+	    channel.truncate(end);
+	    channel.close();
+	} catch (IOException e) {
+	    throw new RuntimeException("Could not finish capture " + path);
+	}
+	channel = null;
+
+    } // close ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Convert a capture into a pcap file, with one packet per transmitted run
+     * and one more for each damaged copy of it, as the receiver got it.  Each
+     * packet begins with a pseudo-header of four bytes: the kind
+     * (<code>TRANSMIT</code> or <code>FLIPS</code>), the sender, the receiver
+     * (<code>0xff</code>, meaning every other client, for transmits), and the
+     * number of unused bits at the end of the last byte.
+     *
+     * @param  capturePath The pathname of a finished capture file.
+     * @param  pcapPath    The pathname of the pcap file to write.
+     * @throws RuntimeException if either file cannot be used.
+     */
+    public static void exportPcap (String capturePath, String pcapPath) {
+
+	try (Reader in = new Reader(capturePath);
+	     BufferedOutputStream out =
+		 new BufferedOutputStream(new FileOutputStream(pcapPath))) {
+
+	    // The pcap global header, little-endian, with nanosecond stamps.
+	    ByteBuffer header = ByteBuffer.allocate(24);
+	    header.order(ByteOrder.LITTLE_ENDIAN);
+	    header.putInt(PCAP_MAGIC_NANOS);
+	    header.putShort((short)2);
+	    header.putShort((short)4);
+	    header.putInt(0);
+	    header.putInt(0);
+	    header.putInt(PCAP_SNAPLEN);
+	    header.putInt(LINKTYPE_USER0);
+	    out.write(header.array());
+
+	    // The most recent run sent by each sender, to which flips apply.
+	    byte[][] lastSent = new byte[256][];
+	    int[]    lastBits = new int[256];
+
+	    while (in.next()) {
+
+		int    sender = in.getSender();
+		int    receiver;
+		int    bits;
+		byte[] data;
+		if (in.getKind() == TRANSMIT) {
+		    receiver = 0xff;
+		    bits     = in.getBits();
+		    data     = Arrays.copyOf(in.getData(), in.getLength());
+		    lastSent[sender & 0xff] = data;
+		    lastBits[sender & 0xff] = bits;
+		} else {
+		    receiver = in.getReceiver();
+		    bits     = lastBits[sender & 0xff];
+		    data     = lastSent[sender & 0xff].clone();
+		    for (int i = 0; i < in.getFlipCount(); i += 1) {
+			int position = in.getFlip(i);
+			data[position >>> 3] ^= (byte)(0x80 >>> (position & 7));
+		    }
+		}
+
+		long   time   = in.getTime();
+		int    unused = data.length * BITS_PER_BYTE - bits;
+		int    size   = PSEUDO_HEADER_SIZE + data.length;
+		ByteBuffer packet = ByteBuffer.allocate(16 + PSEUDO_HEADER_SIZE);
+		packet.order(ByteOrder.LITTLE_ENDIAN);
+		packet.putInt((int)(time / Scheduler.NANOS_PER_SECOND));
+		packet.putInt((int)(time % Scheduler.NANOS_PER_SECOND));
+		packet.putInt(Math.min(size, PCAP_SNAPLEN));
+		packet.putInt(size);
+		packet.put(in.getKind());
+		packet.put((byte)sender);
+		packet.put((byte)receiver);
+		packet.put((byte)unused);
+		out.write(packet.array());
+		out.write(data, 0, Math.min(size, PCAP_SNAPLEN) -
+			  PSEUDO_HEADER_SIZE);
+
+	    }
+
+	} catch (IOException e) {
+	    throw new RuntimeException("Could not export " + capturePath +
+				       " to " + pcapPath);
+	}
+
+    } // exportPcap ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Convert a capture file into a pcap file.
+     *
+     * @param args The pathnames of the capture file and the pcap file.
+     */
+    public static void main (String[] args) {
+
+	if (args.length != 2) {
+	    System.err.println("Usage: java WireCapture " +
+			       "<capture file> <pcap file>");
+	    System.exit(1);
+	}
+	exportPcap(args[0], args[1]);
+
+    } // main ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Make sure that the mapped region has room for a record, moving the
+     * mapping further into the file if it does not.
+     *
+     * @param size The size of the record, in bytes.
+     */
+    private void reserve (int size) {
+
+	if (buffer == null) {
+	    throw new RuntimeException("Capture " + path + " is closed");
+	}
+	if (buffer.remaining() < size) {
+	    map(base + buffer.position(), Math.max(CHUNK_SIZE, size));
+	}
+
+    } // reserve ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Map a region of the file, growing the file to hold it.
+     *
+     * @param position Where in the file the region begins.
+     * @param size     The size of the region, in bytes.
+     */
+    private void map (long position, int size) {
+
+	try {
+	    buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+	} catch (IOException e) {
+	    throw new RuntimeException("Could not extend capture " + path);
+	}
+	base = position;
+
+    } // map ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // INNER CLASSES
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A reader that streams the records of a finished capture file, one at a
+     * time, from the start.  It holds only the current record, reusing its
+     * buffers, so a capture of any size may be read in constant memory.
+     */
+    public static class Reader implements AutoCloseable {
+
+	// =====================================================================
+	/**
+	 * Open a capture file, positioned before its first record.
+	 *
+	 * @param  path The pathname of a finished capture file.
+	 * @throws RuntimeException if the file cannot be read or is not a
+	 *                          capture.
+	 */
+	public Reader (String path) {
+
+	    this.path = path;
+	    try {
+		in = new DataInputStream(new BufferedInputStream(
+					     new FileInputStream(path),
+					     READ_BUFFER_SIZE));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+		    throw new RuntimeException(path + " is not a wire capture");
+		}
+	    } catch (IOException e) {
+		throw new RuntimeException("Could not read capture " + path);
+	    }
+
+	} // Reader ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * Read the next record.
+	 *
+	 * @return <code>true</code> if there was another record;
+	 *         <code>false</code> at the end of the capture.
+	 * @throws RuntimeException if the file cannot be read or is corrupt.
+	 */
+	public boolean next () {
+
+	    try {
+
+		int kind = in.read();
+		if (kind < 0) {
+		    return false;
+		}
+		this.kind = (byte)kind;
+		time      = in.readLong();
+		sender    = in.readInt();
+
+		if (kind == TRANSMIT) {
+		    receiver  = -1;
+		    bits      = in.readInt();
+		    length    = (bits + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+		    flipCount = 0;
+		    if (data.length < length) {
+			data = new byte[Math.max(length, 2 * data.length)];
+		    }
+		    in.readFully(data, 0, length);
+		} else if (kind == FLIPS) {
+		    receiver  = in.readInt();
+		    bits      = 0;
+		    length    = 0;
+		    flipCount = in.readInt();
+		    if (flips.length < flipCount) {
+			flips = new int[Math.max(flipCount, 2 * flips.length)];
+		    }
+		    for (int i = 0; i < flipCount; i += 1) {
+			flips[i] = in.readInt();
+		    }
+		} else {
+		    throw new RuntimeException(path +
+					       " has an unknown record kind " +
+					       kind);
+		}
+
+	    } catch (EOFException e) {
+		throw new RuntimeException(path + " ends within a record");
+	    } catch (IOException e) {
+		throw new RuntimeException("Could not read capture " + path);
+	    }
+
+	    return true;
+
+	} // next ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the kind of the current record. */
+	public byte getKind () {
+
+	    return kind;
+
+	} // getKind ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the time of the current record, in nanoseconds. */
+	public long getTime () {
+
+	    return time;
+
+	} // getTime ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the position of the sender of the current record. */
+	public int getSender () {
+
+	    return sender;
+
+	} // getSender ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * @return the position of the receiver of a flip record, or
+	 *         <code>-1</code> for a transmit record.
+	 */
+	public int getReceiver () {
+
+	    return receiver;
+
+	} // getReceiver ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the number of bits in a transmit record. */
+	public int getBits () {
+
+	    return bits;
+
+	} // getBits ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * @return the buffer holding the bytes of a transmit record, from
+	 *         index 0.  It is reused by the next record.
+	 */
+	public byte[] getData () {
+
+	    return data;
+
+	} // getData ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the number of bytes in a transmit record. */
+	public int getLength () {
+
+	    return length;
+
+	} // getLength ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** @return the number of flipped bits in a flip record. */
+	public int getFlipCount () {
+
+	    return flipCount;
+
+	} // getFlipCount ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/**
+	 * @param  i Which flipped bit, in ascending order of position.
+	 * @return the position of that bit within the sender's last run.
+	 */
+	public int getFlip (int i) {
+
+	    return flips[i];
+
+	} // getFlip ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	/** Close the capture file. */
+	public void close () {
+
+	    try {
+		in.close();
+	    } catch (IOException e) {
+		throw new RuntimeException("Could not close capture " + path);
+	    }
+
+	} // close ()
+	// =====================================================================
+
+
+
+	// =====================================================================
+	// DATA MEMBERS
+
+	/** The pathname of the capture file. */
+	private final String          path;
+
+	/** The stream of records. */
+	private final DataInputStream in;
+
+	/** The fields of the current record. */
+	private byte                  kind;
+	private long                  time;
+	private int                   sender;
+	private int                   receiver;
+	private int                   bits;
+	private int                   length;
+	private int                   flipCount;
+
+	/** The bytes of the current transmit record. */
+	private byte[]                data  = new byte[256];
+
+	/** The positions of the current flip record. */
+	private int[]                 flips = new int[16];
+
+	/** The size of the read buffer: 64 KB. */
+	private static final int      READ_BUFFER_SIZE = 1 << 16;
+	// =====================================================================
+
+    } // class Reader
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The pathname of the capture file. */
+    private final String     path;
+
+    /** The open capture file, or <code>null</code> once closed. */
+    private FileChannel      channel;
+
+    /** The region of the file now being written. */
+    private MappedByteBuffer buffer;
+
+    /** Where in the file the mapped region begins. */
+    private long             base;
+
+    /** The kind byte of a transmit record. */
+    public static final byte TRANSMIT = 1;
+
+    /** The kind byte of a flip record. */
+    public static final byte FLIPS    = 2;
+
+    /** The first int of a capture file: "WCAP". */
+    private static final int MAGIC                = 0x57434150;
+
+    /** The version of the capture format. */
+    private static final int VERSION              = 1;
+
+    /** The size of a transmit record, less its data. */
+    private static final int TRANSMIT_HEADER_SIZE = 1 + 8 + 4 + 4;
+
+    /** The size of a flip record, less its positions. */
+    private static final int FLIPS_HEADER_SIZE    = 1 + 8 + 4 + 4 + 4;
+
+    /** How much of the file to map at a time: 16 MB. */
+    private static final int CHUNK_SIZE           = 1 << 24;
+
+    /** The pcap magic number for nanosecond time stamps. */
+    private static final int PCAP_MAGIC_NANOS     = 0xa1b23c4d;
+
+    /** The pcap link type reserved for private use. */
+    private static final int LINKTYPE_USER0       = 147;
+
+    /** The largest packet written to a pcap file. */
+    private static final int PCAP_SNAPLEN         = 65535;
+
+    /** The size of the pseudo-header on each exported packet. */
+    private static final int PSEUDO_HEADER_SIZE   = 4;
+
+    /** The number of bits in a byte. */
+    private static final int BITS_PER_BYTE        = 8;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class WireCapture
+// =============================================================================